@@ -0,0 +1,613 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A B+tree version of the BinarySearchTree.
+ * <p>Every node holds up to order keys in an array, so a lookup touches
+ * about log base order of n nodes instead of log base 2 of n, and the keys
+ * of a node are searched inside one block of memory. All the values sit in
+ * the leaves, which are linked left to right, so keys and values walk the
+ * leaf arrays in order without going back up the tree. Every node except
+ * the root is kept at least half full.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class BPlusTree<K extends Comparable<K>, V> implements MapADT<K,V> {
+
+	private static final int DEFAULT_ORDER = 64;
+	private static final int MIN_ORDER = 4;
+
+	private final int order;
+	private final int minKeys;
+	private Node<K> root;
+	private Leaf<K,V> first;
+	private int currentSize;
+
+	//Results handed back up by insert
+	private K splitKey;
+	private Node<K> splitNode;
+	private V oldValue;
+	private boolean replaced;
+
+	/**
+	 * Default constructor
+	 */
+	public BPlusTree() {
+		this(DEFAULT_ORDER);
+	}
+
+	/**
+	 * Constructor that takes in the most keys a node may hold
+	 * @param order keys per node, at least 4
+	 */
+	public BPlusTree(int order) {
+		if(order < MIN_ORDER) {
+			throw new IllegalArgumentException("Order must be at least " + MIN_ORDER + ": " + order);
+		}
+		this.order = order;
+		minKeys = order/2;
+		clear();
+	}
+
+	/**
+	 * Keys shared by leaves and inner nodes. Arrays hold one
+	 * extra slot so a node can overflow before it is split
+	 * @param <K> key
+	 */
+	abstract static class Node<K> {
+		K[] keys;
+		int count;
+
+		/**
+		 * Hands a freshly created array out as the
+		 * array type of a node field
+		 * @param array new array of the erased element type
+		 * @return the same array
+		 */
+		@SuppressWarnings("unchecked")
+		static <T> T[] typed(Object[] array) {
+			return (T[]) array;
+		}
+	}
+
+	static final class Leaf<K,V> extends Node<K> {
+		V[] values;
+		Leaf<K,V> next;
+
+		Leaf(int order) {
+			keys = typed(new Comparable<?>[order+1]);
+			values = typed(new Object[order+1]);
+		}
+	}
+
+	static final class Inner<K> extends Node<K> {
+		Node<K>[] children;
+
+		Inner(int order) {
+			keys = typed(new Comparable<?>[order+1]);
+			children = typed(new Node<?>[order+2]);
+		}
+	}
+
+	/**
+	 * Binary search inside one node
+	 * @param node the node to search
+	 * @param key to look for
+	 * @return the index of the key, or -(insertion point)-1
+	 */
+	private static <K extends Comparable<K>> int search(Node<K> node, K key) {
+		int low = 0;
+		int high = node.count-1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int comp = node.keys[mid].compareTo(key);
+			if(comp < 0) {
+				low = mid+1;
+			} else if(comp > 0) {
+				high = mid-1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low+1);
+	}
+
+	/**
+	 * Picks the child of an inner node a key belongs under,
+	 * keys equal to a separator go right
+	 */
+	private static <K extends Comparable<K>> int childIndex(Inner<K> node, K key) {
+		int i = search(node, key);
+		return i >= 0 ? i+1 : -i-1;
+	}
+
+	/**
+	 * Every node that is not an Inner is a Leaf of this tree,
+	 * so its values are always V
+	 * @param node a leaf seen through its Node type
+	 * @return the node as a leaf
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K,V> Leaf<K,V> asLeaf(Node<K> node) {
+		return (Leaf<K,V>) node;
+	}
+
+	/**
+	 * Walks down to the leaf a key belongs in
+	 * @param key to look for
+	 * @return the leaf
+	 */
+	private Leaf<K,V> findLeaf(K key) {
+		Node<K> node = root;
+		while(node instanceof Inner) {
+			Inner<K> inner = (Inner<K>) node;
+			node = inner.children[childIndex(inner, key)];
+		}
+		return asLeaf(node);
+	}
+
+	@Override
+	public boolean contains(K key) {
+		Leaf<K,V> leaf = findLeaf(key);
+		return search(leaf, key) >= 0;
+	}
+
+	@Override
+	public V getValue(K key) {
+		Leaf<K,V> leaf = findLeaf(key);
+		int i = search(leaf, key);
+		return i >= 0 ? leaf.values[i] : null;
+	}
+
+	@Override
+	public V add(K key, V value) {
+		if(key == null) {
+			throw new NullPointerException();
+		}
+		replaced = false;
+		oldValue = null;
+		if(insert(root, key, value)) {
+			Inner<K> newRoot = new Inner<>(order);
+			newRoot.keys[0] = splitKey;
+			newRoot.children[0] = root;
+			newRoot.children[1] = splitNode;
+			newRoot.count = 1;
+			root = newRoot;
+			splitKey = null;
+			splitNode = null;
+		}
+		if(!replaced) {
+			currentSize++;
+		}
+		V temp = oldValue;
+		oldValue = null;
+		return temp;
+	}
+
+	/**
+	 * Recursive helper for add
+	 * @param node root of the subtree to insert into
+	 * @param key the key to be inserted
+	 * @param value the value to be inserted
+	 * @return true if node split, the new right node and its
+	 *         separator are left in splitNode and splitKey
+	 */
+	private boolean insert(Node<K> node, K key, V value) {
+		if(node instanceof Leaf) {
+			Leaf<K,V> leaf = asLeaf(node);
+			int i = search(leaf, key);
+			if(i >= 0) {
+				oldValue = leaf.values[i];
+				leaf.values[i] = value;
+				replaced = true;
+				return false;
+			}
+			i = -i-1;
+			System.arraycopy(leaf.keys, i, leaf.keys, i+1, leaf.count-i);
+			System.arraycopy(leaf.values, i, leaf.values, i+1, leaf.count-i);
+			leaf.keys[i] = key;
+			leaf.values[i] = value;
+			leaf.count++;
+			if(leaf.count <= order) {
+				return false;
+			}
+			splitLeaf(leaf);
+			return true;
+		}
+		Inner<K> inner = (Inner<K>) node;
+		int i = childIndex(inner, key);
+		if(!insert(inner.children[i], key, value)) {
+			return false;
+		}
+		System.arraycopy(inner.keys, i, inner.keys, i+1, inner.count-i);
+		System.arraycopy(inner.children, i+1, inner.children, i+2, inner.count-i);
+		inner.keys[i] = splitKey;
+		inner.children[i+1] = splitNode;
+		inner.count++;
+		if(inner.count <= order) {
+			return false;
+		}
+		splitInner(inner);
+		return true;
+	}
+
+	/**
+	 * Moves the upper half of an overflowing leaf into a new leaf
+	 */
+	private void splitLeaf(Leaf<K,V> leaf) {
+		Leaf<K,V> right = new Leaf<>(order);
+		int keep = leaf.count/2;
+		right.count = leaf.count - keep;
+		System.arraycopy(leaf.keys, keep, right.keys, 0, right.count);
+		System.arraycopy(leaf.values, keep, right.values, 0, right.count);
+		clearSlots(leaf, keep, leaf.count);
+		leaf.count = keep;
+		right.next = leaf.next;
+		leaf.next = right;
+		splitKey = right.keys[0];
+		splitNode = right;
+	}
+
+	/**
+	 * Moves the upper half of an overflowing inner node into a new
+	 * node, the middle key moves up to the parent
+	 */
+	private void splitInner(Inner<K> inner) {
+		Inner<K> right = new Inner<>(order);
+		int mid = inner.count/2;
+		right.count = inner.count - mid - 1;
+		System.arraycopy(inner.keys, mid+1, right.keys, 0, right.count);
+		System.arraycopy(inner.children, mid+1, right.children, 0, right.count+1);
+		splitKey = inner.keys[mid];
+		for(int i = mid; i < inner.count; i++) {
+			inner.keys[i] = null;
+			inner.children[i+1] = null;
+		}
+		inner.count = mid;
+		splitNode = right;
+	}
+
+	@Override
+	public boolean delete(K key) {
+		if(!remove(root, key)) {
+			return false;
+		}
+		currentSize--;
+		if(root instanceof Inner && root.count == 0) {
+			root = ((Inner<K>) root).children[0];
+		}
+		return true;
+	}
+
+	/**
+	 * Recursive helper for delete, fixes any child left
+	 * less than half full on the way back up
+	 * @param node root of the subtree to delete from
+	 * @param key the key to be deleted
+	 * @return true if the key was found
+	 */
+	private boolean remove(Node<K> node, K key) {
+		if(node instanceof Leaf) {
+			Leaf<K,V> leaf = asLeaf(node);
+			int i = search(leaf, key);
+			if(i < 0) {
+				return false;
+			}
+			System.arraycopy(leaf.keys, i+1, leaf.keys, i, leaf.count-i-1);
+			System.arraycopy(leaf.values, i+1, leaf.values, i, leaf.count-i-1);
+			leaf.count--;
+			leaf.keys[leaf.count] = null;
+			leaf.values[leaf.count] = null;
+			return true;
+		}
+		Inner<K> inner = (Inner<K>) node;
+		int i = childIndex(inner, key);
+		if(!remove(inner.children[i], key)) {
+			return false;
+		}
+		if(inner.children[i].count < minKeys) {
+			fixUnderflow(inner, i);
+		}
+		return true;
+	}
+
+	/**
+	 * Refills a child that dropped below half full by borrowing a key
+	 * from a sibling, or merges it with a sibling when neither can spare one
+	 * @param parent parent of the child
+	 * @param i index of the child
+	 */
+	private void fixUnderflow(Inner<K> parent, int i) {
+		Node<K> child = parent.children[i];
+		Node<K> left = i > 0 ? parent.children[i-1] : null;
+		Node<K> right = i < parent.count ? parent.children[i+1] : null;
+
+		if(left != null && left.count > minKeys) {
+			borrowFromLeft(parent, i, left, child);
+		} else if(right != null && right.count > minKeys) {
+			borrowFromRight(parent, i, child, right);
+		} else if(left != null) {
+			merge(parent, i-1, left, child);
+		} else {
+			merge(parent, i, child, right);
+		}
+	}
+
+	private void borrowFromLeft(Inner<K> parent, int i, Node<K> left, Node<K> child) {
+		System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+		if(child instanceof Leaf) {
+			Leaf<K,V> l = asLeaf(left);
+			Leaf<K,V> c = asLeaf(child);
+			System.arraycopy(c.values, 0, c.values, 1, c.count);
+			c.keys[0] = l.keys[l.count-1];
+			c.values[0] = l.values[l.count-1];
+			clearSlots(l, l.count-1, l.count);
+			parent.keys[i-1] = c.keys[0];
+		} else {
+			Inner<K> l = (Inner<K>) left;
+			Inner<K> c = (Inner<K>) child;
+			System.arraycopy(c.children, 0, c.children, 1, c.count+1);
+			c.keys[0] = parent.keys[i-1];
+			c.children[0] = l.children[l.count];
+			parent.keys[i-1] = l.keys[l.count-1];
+			l.keys[l.count-1] = null;
+			l.children[l.count] = null;
+		}
+		left.count--;
+		child.count++;
+	}
+
+	private void borrowFromRight(Inner<K> parent, int i, Node<K> child, Node<K> right) {
+		if(child instanceof Leaf) {
+			Leaf<K,V> c = asLeaf(child);
+			Leaf<K,V> r = asLeaf(right);
+			c.keys[c.count] = r.keys[0];
+			c.values[c.count] = r.values[0];
+			System.arraycopy(r.keys, 1, r.keys, 0, r.count-1);
+			System.arraycopy(r.values, 1, r.values, 0, r.count-1);
+			clearSlots(r, r.count-1, r.count);
+			parent.keys[i] = r.keys[0];
+		} else {
+			Inner<K> c = (Inner<K>) child;
+			Inner<K> r = (Inner<K>) right;
+			c.keys[c.count] = parent.keys[i];
+			c.children[c.count+1] = r.children[0];
+			parent.keys[i] = r.keys[0];
+			System.arraycopy(r.keys, 1, r.keys, 0, r.count-1);
+			System.arraycopy(r.children, 1, r.children, 0, r.count);
+			r.keys[r.count-1] = null;
+			r.children[r.count] = null;
+		}
+		right.count--;
+		child.count++;
+	}
+
+	/**
+	 * Folds the node at i+1 into the node at i and drops
+	 * their separator from the parent
+	 */
+	private void merge(Inner<K> parent, int i, Node<K> left, Node<K> right) {
+		if(left instanceof Leaf) {
+			Leaf<K,V> l = asLeaf(left);
+			Leaf<K,V> r = asLeaf(right);
+			System.arraycopy(r.keys, 0, l.keys, l.count, r.count);
+			System.arraycopy(r.values, 0, l.values, l.count, r.count);
+			l.count += r.count;
+			l.next = r.next;
+		} else {
+			Inner<K> l = (Inner<K>) left;
+			Inner<K> r = (Inner<K>) right;
+			l.keys[l.count] = parent.keys[i];
+			System.arraycopy(r.keys, 0, l.keys, l.count+1, r.count);
+			System.arraycopy(r.children, 0, l.children, l.count+1, r.count+1);
+			l.count += r.count+1;
+		}
+		System.arraycopy(parent.keys, i+1, parent.keys, i, parent.count-i-1);
+		System.arraycopy(parent.children, i+2, parent.children, i+1, parent.count-i-1);
+		parent.count--;
+		parent.keys[parent.count] = null;
+		parent.children[parent.count+1] = null;
+	}
+
+	/**
+	 * Nulls out leaf slots so removed entries can be collected
+	 */
+	private void clearSlots(Leaf<K,V> leaf, int from, int to) {
+		for(int i = from; i < to; i++) {
+			leaf.keys[i] = null;
+			leaf.values[i] = null;
+		}
+	}
+
+	@Override
+	public K getKey(V value) {
+		for(Leaf<K,V> leaf = first; leaf != null; leaf = leaf.next) {
+			for(int i = 0; i < leaf.count; i++) {
+				if(Objects.equals(leaf.values[i], value)) {
+					return leaf.keys[i];
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return currentSize==0;
+	}
+
+	@Override
+	public void clear() {
+		first = new Leaf<>(order);
+		root = first;
+		currentSize = 0;
+	}
+
+	/**
+	 * @return the most keys a node may hold
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Builds a tree from entries already sorted by strictly increasing
+	 * key in one pass. Leaves are filled left to right and each level of
+	 * inner nodes is built from the one below, so nothing is ever split
+	 * @param entries sorted entries
+	 * @param order keys per node, at least 4
+	 * @return the new tree
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public static <K extends Comparable<K>, V> BPlusTree<K,V> fromSorted(Iterator<? extends Map.Entry<K,V>> entries, int order) {
+		BPlusTree<K,V> tree = new BPlusTree<>(order);
+		if(!entries.hasNext()) {
+			return tree;
+		}
+		List<Node<K>> level = new ArrayList<>();
+		List<K> lowest = new ArrayList<>();
+		Leaf<K,V> leaf = tree.first;
+		level.add(leaf);
+		K last = null;
+		while(entries.hasNext()) {
+			Map.Entry<K,V> e = entries.next();
+			K key = e.getKey();
+			if(key == null) {
+				throw new NullPointerException();
+			}
+			if(last != null && last.compareTo(key) >= 0) {
+				throw new IllegalArgumentException("Keys are not strictly increasing at " + key);
+			}
+			if(leaf.count == order) {
+				Leaf<K,V> next = new Leaf<>(order);
+				leaf.next = next;
+				leaf = next;
+				level.add(leaf);
+			}
+			if(leaf.count == 0) {
+				lowest.add(key);
+			}
+			leaf.keys[leaf.count] = key;
+			leaf.values[leaf.count] = e.getValue();
+			leaf.count++;
+			tree.currentSize++;
+			last = key;
+		}
+		//The last leaf may be short, even it out with the one before it
+		if(level.size() > 1 && leaf.count < tree.minKeys) {
+			Leaf<K,V> previous = asLeaf(level.get(level.size()-2));
+			int move = (previous.count + leaf.count)/2 - leaf.count;
+			System.arraycopy(leaf.keys, 0, leaf.keys, move, leaf.count);
+			System.arraycopy(leaf.values, 0, leaf.values, move, leaf.count);
+			System.arraycopy(previous.keys, previous.count-move, leaf.keys, 0, move);
+			System.arraycopy(previous.values, previous.count-move, leaf.values, 0, move);
+			tree.clearSlots(previous, previous.count-move, previous.count);
+			previous.count -= move;
+			leaf.count += move;
+			lowest.set(lowest.size()-1, leaf.keys[0]);
+		}
+
+		while(level.size() > 1) {
+			List<Node<K>> parents = new ArrayList<>();
+			List<K> parentLowest = new ArrayList<>();
+			int fanout = order+1;
+			int groups = (level.size() + fanout - 1) / fanout;
+			int start = 0;
+			for(int g = 0; g < groups; g++) {
+				//Spread the children evenly so no node is under half full
+				int end = (int)((long)level.size() * (g+1) / groups);
+				Inner<K> inner = new Inner<>(order);
+				inner.children[0] = level.get(start);
+				for(int c = start+1; c < end; c++) {
+					inner.keys[inner.count] = lowest.get(c);
+					inner.children[inner.count+1] = level.get(c);
+					inner.count++;
+				}
+				parents.add(inner);
+				parentLowest.add(lowest.get(start));
+				start = end;
+			}
+			level = parents;
+			lowest = parentLowest;
+		}
+		tree.root = level.get(0);
+		return tree;
+	}
+
+	/**
+	 * Builds a tree with the default order from sorted entries
+	 * @see #fromSorted(Iterator, int)
+	 */
+	public static <K extends Comparable<K>, V> BPlusTree<K,V> fromSorted(Iterator<? extends Map.Entry<K,V>> entries) {
+		return fromSorted(entries, DEFAULT_ORDER);
+	}
+
+	@Override
+	public Iterator<K> keys() {
+		return new LeafIterator<K>() {
+			@Override
+			K read(Leaf<K,V> leaf, int i) {
+				return leaf.keys[i];
+			}
+		};
+	}
+
+	@Override
+	public Iterator<V> values() {
+		return new LeafIterator<V>() {
+			@Override
+			V read(Leaf<K,V> leaf, int i) {
+				return leaf.values[i];
+			}
+		};
+	}
+
+	/**
+	 * Walks the linked leaves left to right
+	 * @param <T> key or value
+	 */
+	abstract class LeafIterator<T> implements Iterator<T> {
+
+		Leaf<K,V> leaf = first;
+		int index;
+
+		LeafIterator() {
+			skipEmpty();
+		}
+
+		private void skipEmpty() {
+			while(leaf != null && index >= leaf.count) {
+				leaf = leaf.next;
+				index = 0;
+			}
+		}
+
+		abstract T read(Leaf<K,V> leaf, int i);
+
+		@Override
+		public boolean hasNext() {
+			return leaf != null;
+		}
+
+		@Override
+		public T next() {
+			if(leaf == null) {
+				throw new NoSuchElementException();
+			}
+			T temp = read(leaf, index++);
+			skipEmpty();
+			return temp;
+		}
+	}
+}
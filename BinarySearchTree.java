@@ -1,18 +1,72 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class BinarySearchTree<K extends Comparable<K>, V> implements MapADT<K,V> {
 
 	private int currentSize;
-	private Node head; 
+	private int modCount;
+	private Node<K,V> head; 
+	private ReverseIndex<K,V> reverse;
+	private final boolean balanced;
+	private final boolean counting;
+	private final Comparator<? super K> comparator;
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Node<K,V>[] path = (Node<K,V>[]) new Node[32];
 	
 	/**
 	 * Default constructor
 	 */
 	public BinarySearchTree() {
+		this(false);
+	}
+
+	/**
+	 * Constructor that can make the tree balance itself. A balanced
+	 * tree is kept as an AVL tree, so the heights of the two subtrees
+	 * of any node differ by at most one and add, delete and getValue
+	 * stay O(log n) even when the keys arrive in order
+	 * @param balanced true to rebalance on every add and delete
+	 */
+	public BinarySearchTree(boolean balanced) {
+		this(balanced, false);
+	}
+
+	/**
+	 * Constructor that can also keep the size of every subtree in its
+	 * root node, which rank, select and countRange need. The sizes are
+	 * kept up to date by add and delete along the path they already walk
+	 * @param balanced true to rebalance on every add and delete
+	 * @param orderStatistics true to keep subtree sizes
+	 */
+	public BinarySearchTree(boolean balanced, boolean orderStatistics) {
+		this(balanced, orderStatistics, null);
+	}
+
+	/**
+	 * Constructor that orders the keys with a comparator instead of
+	 * their compareTo. Every search calls it once per level, so a
+	 * comparator written for the one key type keeps that call cheap
+	 * @param balanced true to rebalance on every add and delete
+	 * @param orderStatistics true to keep subtree sizes
+	 * @param comparator the key order, null for the natural order
+	 */
+	public BinarySearchTree(boolean balanced, boolean orderStatistics, Comparator<? super K> comparator) {
+		this.balanced = balanced;
+		this.counting = orderStatistics;
+		this.comparator = comparator;
 		currentSize = 0;
 		head = null;
 	}
@@ -25,235 +79,570 @@ public class BinarySearchTree<K extends Comparable<K>, V> implements MapADT<K,V>
 	 * @param <V>
 	 *            Value
 	 */
-	class Node<K, V>{
+	static class Node<K, V>{
 
 		public Node(K key, V value) {
 			k = key;
 			v = value;
 		}
 
-		Node left;
-		Node right;
+		Node<K,V> left;
+		Node<K,V> right;
 		K k;
 		V v;
+		int height = 1;
+		int size = 1;
 
 	}
 
+	/**
+	 * Compares two keys with the comparator, or their natural order
+	 */
+	private int compare(K a, K b) {
+		if (comparator != null) {
+			return comparator.compare(a, b);
+		}
+		return a.compareTo(b);
+	}
+
+	/**
+	 * @return the comparator ordering the keys, null for the natural order
+	 */
+	public Comparator<? super K> comparator() {
+		return comparator;
+	}
+
 	/**
 	 * Searches for a specific node in the tree
 	 * @param key, the key to use for searching
 	 * @return the node found
 	 */
-	private Node searchNode(K key) {
-		Node next = head;
+	private Node<K,V> searchNode(K key) {
+		Node<K,V> next = head;
 		while (next != null) {
-			if (((Comparable) key).compareTo(next.k) == 0) {
+			int comp = compare(key, next.k);
+			if (comp == 0) {
 				return next;
-			} else if (((Comparable) key).compareTo(next.k) > 0)
-				next = next.right;
-			else
-				next = next.left;
+			}
+			next = comp > 0 ? next.right : next.left;
 		}
 		return null;
 	}
 
+	@Override
+	public boolean contains(K key) {
+		return searchNode(key) != null;
+	}
+
 	/**
-	 * Searches to see if a key is in the bns
-	 * 
-	 * @param key to search for
-	 * @return the value associated with the key
+	 * Remembers a node on the way down so add and delete can fix
+	 * heights and sizes on the way back up without recursing
+	 * @param depth where the node goes
+	 * @param node the node
 	 */
-	private V search(K key) {
-		Node next = head;
-		while (next != null) {
-			if (((Comparable) key).compareTo(next.k) == 0)
-				return (V) next.v;
-			else if (((Comparable) key).compareTo(next.k) > 0)
-				next = next.right;
-			else
-				next = next.left;
+	private void push(int depth, Node<K,V> node) {
+		if (depth == path.length) {
+			path = Arrays.copyOf(path, depth * 2);
 		}
-		return null;
+		path[depth] = node;
 	}
 
-	@Override
-	public boolean contains(K key) {
-		if (search(key) == null)
-			return false;
-		return true;
+	/**
+	 * Walks back up the remembered path, fixing heights and sizes and
+	 * rotating when balanced. A rotated subtree is hung back on the node
+	 * above it, which is the next one up the path
+	 * @param depth how many nodes are on the path
+	 */
+	private void fixPath(int depth) {
+		for (int i = depth-1; i >= 0; i--) {
+			Node<K,V> node = path[i];
+			path[i] = null;
+			if (!balanced) {
+				updateHeight(node);
+				continue;
+			}
+			Node<K,V> top = rebalance(node);
+			if (top != node) {
+				if (i == 0) {
+					head = top;
+				} else if (path[i-1].left == node) {
+					path[i-1].left = top;
+				} else {
+					path[i-1].right = top;
+				}
+			}
+		}
 	}
 
+	/**
+	 * Adds or replaces in one walk down the tree with one compare per
+	 * level. Only a balanced or counting tree remembers the path, to fix
+	 * it on the way back up, and nothing is changed if the key is found
+	 */
 	@Override
 	public V add(K key, V value) {
-		if (contains(key)) {
-			Node node = searchNode(key);
-			Object temp = node.v;
-			node.v = value;
-			return (V)temp;
-		} else if (head == null) {
-			head = new Node<>(key, value);
-			currentSize++;
-			return null;
+		boolean track = balanced || counting;
+		Node<K,V> parent = null;
+		Node<K,V> next = head;
+		int comp = 0;
+		int depth = 0;
+		while (next != null) {
+			comp = compare(key, next.k);
+			if (comp == 0) {
+				if (track) {
+					Arrays.fill(path, 0, depth, null);
+				}
+				V temp = next.v;
+				next.v = value;
+				if (reverse != null && !Objects.equals(temp, value)) {
+					reverse.remove(temp, next.k);
+					reverse.put(value, next.k);
+				}
+				return temp;
+			}
+			if (track) {
+				push(depth++, next);
+			}
+			parent = next;
+			next = comp > 0 ? next.right : next.left;
+		}
+		Node<K,V> node = new Node<>(key, value);
+		if (parent == null) {
+			head = node;
+		} else if (comp > 0) {
+			parent.right = node;
 		} else {
-			insert(key, value, head);
+			parent.left = node;
+		}
+		if (track) {
+			fixPath(depth);
 		}
 		currentSize++;
+		modCount++;
+		if (reverse != null) {
+			reverse.put(value, key);
+		}
 		return null;
 	}
 
 	/**
-	 * Helper method to make my add more readable Goes down and looks for a null to
-	 * enter the node into the BNS
-	 * 
-	 * @param key the key to be inseted
-	 * @param value the value to be inserted
-	 * @param parent the parent of the current node
-	 * @return the key thats being added
-	 */
-	private K insert(K key, V value, Node parent) {
-		if (((Comparable) key).compareTo(parent.k) > 0) {
-			if (parent.right == null) {
-				parent.right = new Node(key, value);
-				return (K) parent.right.k;
-			} else {
-				insert(key, value, parent.right);
+	 * Finds and unlinks in one walk down the tree. A node with two
+	 * children is replaced by its successor, and the walk to the
+	 * successor goes on the same path so it gets fixed too
+	 */
+	@Override
+	public boolean delete(K key) {
+		boolean track = balanced || counting;
+		Node<K,V> parent = null;
+		Node<K,V> current = head;
+		int depth = 0;
+		while (current != null) {
+			int comp = compare(key, current.k);
+			if (comp == 0) {
+				break;
+			}
+			if (track) {
+				push(depth++, current);
 			}
+			parent = current;
+			current = comp > 0 ? current.right : current.left;
+		}
+		if (current == null) {
+			if (track) {
+				Arrays.fill(path, 0, depth, null);
+			}
+			return false;
+		}
+		if (reverse != null) {
+			reverse.remove(current.v, current.k);
+		}
+		currentSize--;
+		modCount++;
+
+		Node<K,V> newGuy;
+		if (current.left == null) {
+			newGuy = current.right;
+		} else if (current.right == null) {
+			newGuy = current.left;
 		} else {
-			if (parent.left == null) {
-				parent.left = new Node(key, value);
-				return (K) parent.left.k;
-			} else {
-				insert(key, value, parent.left);
+			int spot = depth;
+			if (track) {
+				push(depth++, current);
+			}
+			Node<K,V> stepparent = current;
+			newGuy = current.right;
+			while (newGuy.left != null) {
+				if (track) {
+					push(depth++, newGuy);
+				}
+				stepparent = newGuy;
+				newGuy = newGuy.left;
+			}
+			if (stepparent != current) {
+				stepparent.left = newGuy.right;
+				newGuy.right = current.right;
+			}
+			newGuy.left = current.left;
+			if (track) {
+				path[spot] = newGuy;
 			}
 		}
-		return null;
+
+		if (parent == null) {
+			head = newGuy;
+		} else if (parent.left == current) {
+			parent.left = newGuy;
+		} else {
+			parent.right = newGuy;
+		}
+		if (track) {
+			fixPath(depth);
+		}
+		return true;
 	}
 
 	/**
-	 * A recursive helper methodd for delete that will
-	 * cover all options of node deletion
-	 * @param key, the key to be deleted
-	 * @param parent, the parent of current
-	 * @param current, the node being checked
-	 * @param left, if we are traveling left in the tree
-	 * @return true if it is successfully deleted
-	 */
-	private boolean remove(K key, Node parent, Node current, boolean left) {
-		int comp = ((Comparable) key).compareTo(current.k);
-		
-		if (comp > 0) {
-			return remove(key, current, current.right, false);
-		}
-		else if (comp < 0) {
-			return remove(key, current, current.left, true);
-		} 
-		else {
-			if (current.right == null && current.left == null) {
-				if (parent == null) { // head case and current is head, so dont call the parent
-					head = null;
-				} else {
-					if (left) {
-						parent.left = null;
-					} else {
-						parent.right = null;
-					}
-				}
-			} else if (current.right != null && current.left != null) {
-	
-				Node newGuy = current.right;
-				Node stepparent = current; //evaluate this, could be null if its set to parent, with current it cant be
-				
-				boolean goingLeft = false;
-				while (newGuy.left != null) {
-					stepparent = newGuy;
-					newGuy = newGuy.left;
-					goingLeft = true;
-				}
-				
-				if(goingLeft) {
-					stepparent.left = stepparent.left.right;
-				}else {
-					stepparent.right = stepparent.right.right;
-				}
-				
-				newGuy.left = current.left;
-				newGuy.right = current.right;
-				
-				if(parent == null) {
-					head = newGuy;
-				}else if(left) {
-					parent.left = newGuy;
-				}else {
-					parent.right = newGuy;
+	 * Builds a perfectly balanced tree from entries sorted by strictly
+	 * increasing key in linear time, instead of n calls to add
+	 * @param entries sorted entries
+	 * @return the new tree
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public static <K extends Comparable<K>, V> BinarySearchTree<K,V> fromSorted(Iterator<? extends Map.Entry<K,V>> entries) {
+		return fromSorted(entries, false, false);
+	}
+
+	/**
+	 * Builds a perfectly balanced tree from entries sorted by strictly
+	 * increasing key in linear time, instead of n calls to add
+	 * @param entries sorted entries
+	 * @param balanced true to rebalance on later adds and deletes
+	 * @param orderStatistics true to keep subtree sizes
+	 * @return the new tree
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public static <K extends Comparable<K>, V> BinarySearchTree<K,V> fromSorted(Iterator<? extends Map.Entry<K,V>> entries,
+			boolean balanced, boolean orderStatistics) {
+		return fromSorted(entries, balanced, orderStatistics, null);
+	}
+
+	/**
+	 * Builds a perfectly balanced tree from entries sorted by strictly
+	 * increasing key in the comparator's order, in linear time
+	 * @param entries sorted entries
+	 * @param balanced true to rebalance on later adds and deletes
+	 * @param orderStatistics true to keep subtree sizes
+	 * @param comparator the key order, null for the natural order
+	 * @return the new tree
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public static <K extends Comparable<K>, V> BinarySearchTree<K,V> fromSorted(Iterator<? extends Map.Entry<K,V>> entries,
+			boolean balanced, boolean orderStatistics, Comparator<? super K> comparator) {
+		BinarySearchTree<K,V> tree = new BinarySearchTree<K,V>(balanced, orderStatistics, comparator);
+		tree.load(entries);
+		return tree;
+	}
+
+	/**
+	 * Fills an empty tree from sorted entries
+	 * @param entries sorted entries
+	 */
+	private void load(Iterator<? extends Map.Entry<K,V>> entries) {
+		List<Node<K,V>> nodes = new ArrayList<>();
+		K last = null;
+		while (entries.hasNext()) {
+			Map.Entry<K,V> e = entries.next();
+			checkOrder(last, e.getKey());
+			last = e.getKey();
+			nodes.add(new Node<>(e.getKey(), e.getValue()));
+		}
+		rebuild(nodes);
+	}
+
+	/**
+	 * Makes sure batch keys arrive in strictly increasing order
+	 * @param last the previous key or null
+	 * @param key the next key
+	 */
+	private void checkOrder(K last, K key) {
+		if (key == null) {
+			throw new NullPointerException();
+		}
+		if (last != null && compare(last, key) >= 0) {
+			throw new IllegalArgumentException("Keys are not strictly increasing at " + key);
+		}
+	}
+
+	/**
+	 * Relinks sorted nodes into a perfectly balanced tree
+	 * @param nodes every node of the new tree in key order
+	 */
+	private void rebuild(List<Node<K,V>> nodes) {
+		head = link(nodes, 0, nodes.size());
+		currentSize = nodes.size();
+		modCount++;
+	}
+
+	/**
+	 * Makes the middle node the root of a range and links the
+	 * two halves below it, recursion depth is log n
+	 * @return root of the subtree built from nodes[from, to)
+	 */
+	private Node<K,V> link(List<Node<K,V>> nodes, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		int mid = (from + to) >>> 1;
+		Node<K,V> node = nodes.get(mid);
+		node.left = link(nodes, from, mid);
+		node.right = link(nodes, mid+1, to);
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		node.size = 1 + size(node.left) + size(node.right);
+		return node;
+	}
+
+	/**
+	 * @return true if a batch is small enough that adding or
+	 *         deleting it key by key beats rebuilding the tree
+	 */
+	private boolean smallBatch(int batchSize) {
+		int depth = 32 - Integer.numberOfLeadingZeros(currentSize + 1);
+		return (long) batchSize * depth < currentSize;
+	}
+
+	/**
+	 * Adds a batch of entries sorted by strictly increasing key. A small
+	 * batch is added key by key, a large one is merged with the keys of
+	 * the tree in one pass and the tree is rebuilt balanced, O(n + m)
+	 * @param entries sorted entries, values replace those of existing keys
+	 * @return the number of keys that were not in the tree
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public int addAll(Iterator<? extends Map.Entry<K,V>> entries) {
+		List<Map.Entry<K,V>> batch = new ArrayList<>();
+		K last = null;
+		while (entries.hasNext()) {
+			Map.Entry<K,V> e = entries.next();
+			checkOrder(last, e.getKey());
+			last = e.getKey();
+			batch.add(e);
+		}
+		int before = currentSize;
+		if (smallBatch(batch.size())) {
+			for (Map.Entry<K,V> e : batch) {
+				add(e.getKey(), e.getValue());
+			}
+			return currentSize - before;
+		}
+		List<Node<K,V>> merged = new ArrayList<>(currentSize + batch.size());
+		Iterator<Node<K,V>> existing = new BSTIteratorNode();
+		Node<K,V> node = existing.hasNext() ? existing.next() : null;
+		for (Map.Entry<K,V> e : batch) {
+			K key = e.getKey();
+			int comp = 0;
+			while (node != null && (comp = compare(node.k, key)) < 0) {
+				merged.add(node);
+				node = existing.hasNext() ? existing.next() : null;
+			}
+			if (node != null && comp == 0) {
+				V temp = node.v;
+				node.v = e.getValue();
+				if (reverse != null && !Objects.equals(temp, node.v)) {
+					reverse.remove(temp, node.k);
+					reverse.put(node.v, node.k);
 				}
+				merged.add(node);
+				node = existing.hasNext() ? existing.next() : null;
 			} else {
-				if (parent == null) { 
-					if (current.left == null) {
-						head = current.right;
-					} else {
-						head = current.left;
-					}
-				} else {
-					if (left) {
-						if (current.left == null) {
-							parent.left = current.right;
-						} else {
-							parent.left = current.left;
-						}
-					} else {
-						if (current.left == null) {
-							parent.right = current.right;
-						} else {
-							parent.right = current.left;
-						}
-					}
+				merged.add(new Node<>(key, e.getValue()));
+				if (reverse != null) {
+					reverse.put(e.getValue(), key);
 				}
 			}
 		}
-		return true;
+		while (node != null) {
+			merged.add(node);
+			node = existing.hasNext() ? existing.next() : null;
+		}
+		rebuild(merged);
+		return currentSize - before;
 	}
 
-	@Override
-	public boolean delete(K key) {
-		if(!contains(key)) {
-			return false;
-		}else {
-			currentSize--;
-			return remove(key, null, head, false);
+	/**
+	 * Deletes a batch of keys sorted in strictly increasing order. A small
+	 * batch is deleted key by key, a large one is merged with the keys of
+	 * the tree in one pass and the survivors are rebuilt balanced, O(n + m)
+	 * @param keys sorted keys, keys not in the tree are skipped
+	 * @return the number of keys deleted
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public int deleteAll(Iterator<? extends K> keys) {
+		List<K> batch = new ArrayList<>();
+		K last = null;
+		while (keys.hasNext()) {
+			K key = keys.next();
+			checkOrder(last, key);
+			last = key;
+			batch.add(key);
+		}
+		int before = currentSize;
+		if (smallBatch(batch.size())) {
+			for (K key : batch) {
+				delete(key);
+			}
+			return before - currentSize;
+		}
+		List<Node<K,V>> kept = new ArrayList<>(currentSize);
+		int b = 0;
+		for (Iterator<Node<K,V>> it = new BSTIteratorNode(); it.hasNext();) {
+			Node<K,V> node = it.next();
+			int comp = 0;
+			while (b < batch.size() && (comp = compare(batch.get(b), node.k)) < 0) {
+				b++;
+			}
+			if (b < batch.size() && comp == 0) {
+				if (reverse != null) {
+					reverse.remove(node.v, node.k);
+				}
+				b++;
+			} else {
+				kept.add(node);
+			}
 		}
+		rebuild(kept);
+		return before - currentSize;
 	}
 
-	@Override
-	public V getValue(K key) {
-		return search(key);
+	/**
+	 * Copies the tree into a read only FrozenIndex in O(n). The index
+	 * keeps the keys in flat arrays instead of nodes, so it is smaller
+	 * and faster to search, and later changes to the tree do not show in it
+	 * @return an index holding the same entries in the same order
+	 */
+	public FrozenIndex<K,V> freeze() {
+		return FrozenIndex.of(keys(), values(), comparator);
 	}
 
-	private List<Node> builtList = new ArrayList<Node>();
-	
-	private void build(Node top) {
-		if (top.left != null) {
-			build(top.left);
+	/**
+	 * @return true if the tree rebalances itself
+	 */
+	public boolean isBalanced() {
+		return balanced;
+	}
+
+	private int height(Node<K,V> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private int size(Node<K,V> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private void updateHeight(Node<K,V> node) {
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		if (counting) {
+			node.size = 1 + size(node.left) + size(node.right);
 		}
+	}
 
-		builtList.add(top);
+	/**
+	 * Turns a left leaning subtree to the right
+	 * @param top root of the subtree
+	 * @return the new root of the subtree
+	 */
+	private Node<K,V> rotateRight(Node<K,V> top) {
+		Node<K,V> newTop = top.left;
+		top.left = newTop.right;
+		newTop.right = top;
+		updateHeight(top);
+		updateHeight(newTop);
+		return newTop;
+	}
 
-		if (top.right != null) {
-			build(top.right);
+	/**
+	 * Turns a right leaning subtree to the left
+	 * @param top root of the subtree
+	 * @return the new root of the subtree
+	 */
+	private Node<K,V> rotateLeft(Node<K,V> top) {
+		Node<K,V> newTop = top.right;
+		top.right = newTop.left;
+		newTop.left = top;
+		updateHeight(top);
+		updateHeight(newTop);
+		return newTop;
+	}
+
+	/**
+	 * Fixes the height of a node and rotates it if one
+	 * side has grown two levels taller than the other
+	 * @param node the node whose children just changed
+	 * @return the root of the subtree after rotating
+	 */
+	private Node<K,V> rebalance(Node<K,V> node) {
+		updateHeight(node);
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+			return rotateRight(node);
+		}
+		if (balance < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+			return rotateLeft(node);
 		}
-		
+		return node;
 	}
-	
+
+	@Override
+	public V getValue(K key) {
+		Node<K,V> node = searchNode(key);
+		return node == null ? null : node.v;
+	}
+
 	@Override
 	public K getKey(Object value) {
-		build(head);
-		for(Node node : builtList) {
-			if((node.v.equals(value))){
-				return (K)node.k;
+		if (reverse != null) {
+			return reverse.get(value);
+		}
+		for (Iterator<Node<K,V>> it = new BSTIteratorNode(); it.hasNext();) {
+			Node<K,V> node = it.next();
+			if(Objects.equals(node.v, value)){
+				return node.k;
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Turns the value to key index on or off. While it is on
+	 * getKey is a hash lookup instead of a walk of the whole tree, and
+	 * when several keys hold equal values it returns the one that has
+	 * held its value the longest. While it is off nothing is kept
+	 * @param bidirectional true to keep the index
+	 */
+	public void setBidirectional(boolean bidirectional) {
+		if (!bidirectional) {
+			reverse = null;
+		} else if (reverse == null) {
+			reverse = new ReverseIndex<>(this::compare);
+			for (Iterator<Node<K,V>> it = new BSTIteratorNode(); it.hasNext();) {
+				Node<K,V> node = it.next();
+				reverse.put(node.v, node.k);
+			}
+		}
+	}
+
+	/**
+	 * @return true if getKey uses the value to key index
+	 */
+	public boolean isBidirectional() {
+		return reverse != null;
+	}
+
 	@Override
 	public int size() {
 		return currentSize;
@@ -271,96 +660,507 @@ public class BinarySearchTree<K extends Comparable<K>, V> implements MapADT<K,V>
 	public void clear() {
 		head = null;
 		currentSize = 0;
+		modCount++;
+		if (reverse != null) {
+			reverse.clear();
+		}
 	}
 
-	@Override
-	public Iterator keys() {
-		return new BSTIteratorKey(head);
+	/**
+	 * Finds the largest key less than or equal to the given key
+	 * @param key to compare against
+	 * @return the floor key or null if there is none
+	 */
+	public K floorKey(K key) {
+		Node<K,V> next = head;
+		Node<K,V> best = null;
+		while (next != null) {
+			int comp = compare(key, next.k);
+			if (comp == 0) {
+				return next.k;
+			} else if (comp > 0) {
+				best = next;
+				next = next.right;
+			} else {
+				next = next.left;
+			}
+		}
+		return best == null ? null : best.k;
 	}
 
-	@Override
-	public Iterator values() {
-		return new BSTIteratorValue(head);
+	/**
+	 * Finds the smallest key greater than or equal to the given key
+	 * @param key to compare against
+	 * @return the ceiling key or null if there is none
+	 */
+	public K ceilingKey(K key) {
+		Node<K,V> next = head;
+		Node<K,V> best = null;
+		while (next != null) {
+			int comp = compare(key, next.k);
+			if (comp == 0) {
+				return next.k;
+			} else if (comp < 0) {
+				best = next;
+				next = next.left;
+			} else {
+				next = next.right;
+			}
+		}
+		return best == null ? null : best.k;
 	}
 
-	class BSTIteratorKey implements Iterator<K> {
+	/**
+	 * Finds the smallest key strictly greater than the given key
+	 * @param key to compare against
+	 * @return the higher key or null if there is none
+	 */
+	public K higherKey(K key) {
+		Node<K,V> next = head;
+		Node<K,V> best = null;
+		while (next != null) {
+			if (compare(key, next.k) < 0) {
+				best = next;
+				next = next.left;
+			} else {
+				next = next.right;
+			}
+		}
+		return best == null ? null : best.k;
+	}
 
-		List<K> bst;
+	/**
+	 * Finds the largest key strictly less than the given key
+	 * @param key to compare against
+	 * @return the lower key or null if there is none
+	 */
+	public K lowerKey(K key) {
+		Node<K,V> next = head;
+		Node<K,V> best = null;
+		while (next != null) {
+			if (compare(key, next.k) > 0) {
+				best = next;
+				next = next.right;
+			} else {
+				next = next.left;
+			}
+		}
+		return best == null ? null : best.k;
+	}
 
-		public BSTIteratorKey(Node h) {
-			bst = new ArrayList<K>();
-			if(isEmpty()) {
-				//Dont doThis
-			}else {
-				doThis(h);
+	/**
+	 * @return the smallest key or null if the tree is empty
+	 */
+	public K firstKey() {
+		if (head == null) {
+			return null;
+		}
+		Node<K,V> next = head;
+		while (next.left != null) {
+			next = next.left;
+		}
+		return next.k;
+	}
+
+	/**
+	 * @return the largest key or null if the tree is empty
+	 */
+	public K lastKey() {
+		if (head == null) {
+			return null;
+		}
+		Node<K,V> next = head;
+		while (next.right != null) {
+			next = next.right;
+		}
+		return next.k;
+	}
+
+	/**
+	 * @return true if subtree sizes are kept for rank and select
+	 */
+	public boolean hasOrderStatistics() {
+		return counting;
+	}
+
+	private void checkCounting() {
+		if (!counting) {
+			throw new IllegalStateException("Tree was built without order statistics");
+		}
+	}
+
+	/**
+	 * Counts the keys strictly less than the given key in one descent
+	 * @param key to compare against, it does not have to be in the tree
+	 * @return the number of smaller keys
+	 * @throws IllegalStateException if the tree does not keep subtree sizes
+	 */
+	public int rank(K key) {
+		checkCounting();
+		int rank = 0;
+		Node<K,V> next = head;
+		while (next != null) {
+			int comp = compare(key, next.k);
+			if (comp > 0) {
+				rank += size(next.left) + 1;
+				next = next.right;
+			} else {
+				if (comp == 0) {
+					return rank + size(next.left);
+				}
+				next = next.left;
 			}
 		}
+		return rank;
+	}
 
-		public void doThis(Node top) {
-			if (top.left != null) {
-				doThis(top.left);
+	/**
+	 * Finds the key with the given number of smaller keys,
+	 * select(size()*99/100) is the 99th percentile key
+	 * @param index 0 based position of the key in order
+	 * @return the key at that position
+	 * @throws IndexOutOfBoundsException if index < 0 || index >= size()
+	 * @throws IllegalStateException if the tree does not keep subtree sizes
+	 */
+	public K select(int index) {
+		checkCounting();
+		if (index < 0 || index >= currentSize) {
+			throw new IndexOutOfBoundsException();
+		}
+		Node<K,V> next = head;
+		while (true) {
+			int leftSize = size(next.left);
+			if (index < leftSize) {
+				next = next.left;
+			} else if (index == leftSize) {
+				return next.k;
+			} else {
+				index -= leftSize + 1;
+				next = next.right;
 			}
+		}
+	}
 
-			bst.add((K) top.k);
+	/**
+	 * Counts the keys from lo, inclusive, up to hi, exclusive
+	 * @param lo lowest key to count
+	 * @param hi key to stop before
+	 * @return the number of keys in the range
+	 * @throws IllegalStateException if the tree does not keep subtree sizes
+	 */
+	public int countRange(K lo, K hi) {
+		return Math.max(0, rank(hi) - rank(lo));
+	}
 
-			if (top.right != null) {
-				doThis(top.right);
+	/**
+	 * Iterates in order over the keys from from, inclusive, up to to,
+	 * exclusive. The tree is only descended once, to the first key, and
+	 * keys are found one at a time after that, so taking k keys costs
+	 * O(log n + k) on a balanced tree
+	 * @param from lowest key to return, null to start at the first key
+	 * @param to key to stop before, null to run to the last key
+	 * @return an iterator over the keys in the range
+	 */
+	public Iterator<K> range(K from, K to) {
+		return new BSTIteratorKey(from, to);
+	}
+
+	@Override
+	public Iterator<K> keys() {
+		return new BSTIteratorKey(null, null);
+	}
+
+	@Override
+	public Iterator<V> values() {
+		return new BSTIteratorValue();
+	}
+
+	/**
+	 * @return a spliterator over the keys in order that parallel
+	 *         streams can split into left and right parts of the tree
+	 */
+	public Spliterator<K> spliterator() {
+		return new BSTSpliterator<K>(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+			@Override
+			K read(Node<K,V> node) {
+				return node.k;
+			}
+		};
+	}
+
+	/**
+	 * @return a spliterator over the values in key order
+	 */
+	public Spliterator<V> valueSpliterator() {
+		return new BSTSpliterator<V>(0) {
+			@Override
+			V read(Node<K,V> node) {
+				return node.v;
+			}
+		};
+	}
+
+	/**
+	 * @return a stream of the keys in order, call parallel on it
+	 *         to process the subtrees on several threads
+	 */
+	public Stream<K> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * @return a stream of the values in key order
+	 */
+	public Stream<V> valueStream() {
+		return StreamSupport.stream(valueSpliterator(), false);
+	}
+
+	/**
+	 * In order iterator that keeps only the path to the next node on an
+	 * explicit stack, so it uses O(height) memory, hands out one node at
+	 * a time and does not recurse however deep the tree is. It fails fast
+	 * when the tree changes behind its back and supports remove
+	 */
+	abstract class BSTIterator<T> implements Iterator<T> {
+
+		Deque<Node<K,V>> stack = new ArrayDeque<>();
+		K to;
+		Node<K,V> lastReturned;
+		int expectedModCount = modCount;
+
+		/**
+		 * @param from lowest key to return, null to start at the first key
+		 * @param to key to stop before, null to run to the last key
+		 */
+		BSTIterator(K from, K to) {
+			this.to = to;
+			Node<K,V> next = head;
+			while (next != null) {
+				if (from == null || compare(from, next.k) <= 0) {
+					stack.push(next);
+					next = next.left;
+				} else {
+					next = next.right;
+				}
 			}
 		}
 
+		abstract T read(Node<K,V> node);
+
 		@Override
 		public boolean hasNext() {
-			return !bst.isEmpty();
+			return !stack.isEmpty()
+					&& (to == null || compare(to, stack.peek().k) > 0);
 		}
 
 		@Override
-		public K next() {
-			if (hasNext()) {
-				return (bst.remove(0));
+		public T next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
 			}
-			return null;
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Node<K,V> top = stack.pop();
+			for (Node<K,V> next = top.right; next != null; next = next.left) {
+				stack.push(next);
+			}
+			lastReturned = top;
+			return read(top);
+		}
+
+		/**
+		 * Deletes the last key handed out. Deleting can move nodes
+		 * around, so the path to the next larger key is found again
+		 */
+		@Override
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			K key = lastReturned.k;
+			delete(key);
+			lastReturned = null;
+			expectedModCount = modCount;
+			stack.clear();
+			Node<K,V> next = head;
+			while (next != null) {
+				if (compare(key, next.k) < 0) {
+					stack.push(next);
+					next = next.left;
+				} else {
+					next = next.right;
+				}
+			}
+		}
+
+	}
+
+	class BSTIteratorKey extends BSTIterator<K> {
+
+		public BSTIteratorKey(K from, K to) {
+			super(from, to);
+		}
+
+		@Override
+		K read(Node<K,V> node) {
+			return node.k;
+		}
+
+	}
+
+	class BSTIteratorValue extends BSTIterator<V> {
+
+		public BSTIteratorValue() {
+			super(null, null);
+		}
+
+		@Override
+		V read(Node<K,V> node) {
+			return node.v;
 		}
 
 	}
 
-	class BSTIteratorValue implements Iterator<V> {
+	class BSTIteratorNode extends BSTIterator<Node<K,V>> {
 
-		List<V> bst;
+		public BSTIteratorNode() {
+			super(null, null);
+		}
+
+		@Override
+		Node<K,V> read(Node<K,V> node) {
+			return node;
+		}
+
+	}
+
+	/**
+	 * Spliterator over the tree. Each node on its stack stands for that
+	 * node followed by its right subtree, and the bottom of the stack holds
+	 * the largest keys. Splitting hands everything above the bottom node
+	 * to the new prefix spliterator, or once only one node is left, hands
+	 * off that node and keeps its right subtree
+	 */
+	abstract class BSTSpliterator<T> implements Spliterator<T> {
+
+		Deque<Node<K,V>> stack = new ArrayDeque<>();
+		int characteristics;
+		long estimate;
+		int expectedModCount;
+
+		BSTSpliterator(int characteristics) {
+			this.characteristics = characteristics | Spliterator.ORDERED | Spliterator.SIZED;
+			estimate = currentSize;
+			expectedModCount = modCount;
+			pushLeft(head);
+		}
+
+		BSTSpliterator(BSTSpliterator<T> parent, Deque<Node<K,V>> stack, long estimate) {
+			this.characteristics = parent.characteristics & ~Spliterator.SIZED;
+			this.stack = stack;
+			this.estimate = estimate;
+			this.expectedModCount = parent.expectedModCount;
+		}
 
-		public BSTIteratorValue(Node h) {
-			bst = new ArrayList<V>();
-			if(isEmpty()) {
-				//Dont doThis
-			}else {
-				doThis(h);
+		abstract T read(Node<K,V> node);
+
+		private void pushLeft(Node<K,V> node) {
+			for (; node != null; node = node.left) {
+				stack.push(node);
 			}
 		}
 
-		public void doThis(Node top) {
-			if (top.left != null) {
-				doThis(top.left);
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (stack.isEmpty()) {
+				return false;
 			}
+			Node<K,V> top = stack.pop();
+			pushLeft(top.right);
+			if (estimate > 0) {
+				estimate--;
+			}
+			action.accept(read(top));
+			return true;
+		}
 
-			bst.add((V) top.v);
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			while (tryAdvance(action)) {
+			}
+		}
 
-			if (top.right != null) {
-				doThis(top.right);
+		@Override
+		public Spliterator<T> trySplit() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			//Split sizes are only estimates, neither half knows its exact size
+			if (stack.size() > 1) {
+				characteristics &= ~Spliterator.SIZED;
+				Node<K,V> bottom = stack.removeLast();
+				Deque<Node<K,V>> prefix = stack;
+				stack = new ArrayDeque<>();
+				stack.push(bottom);
+				long half = estimate >>> 1;
+				estimate -= half;
+				return prefix(prefix, half);
 			}
+			if (stack.size() == 1 && stack.peek().right != null) {
+				characteristics &= ~Spliterator.SIZED;
+				Node<K,V> top = stack.pop();
+				pushLeft(top.right);
+				if (estimate > 0) {
+					estimate--;
+				}
+				//A childless copy of the node so the prefix stops after it
+				Deque<Node<K,V>> prefix = new ArrayDeque<>();
+				prefix.push(new Node<>(top.k, top.v));
+				return prefix(prefix, 1);
+			}
+			return null;
+		}
+
+		/**
+		 * @return a spliterator over the nodes of a stack that reads
+		 * and orders them the same way as this one
+		 */
+		private BSTSpliterator<T> prefix(Deque<Node<K,V>> prefix, long estimate) {
+			BSTSpliterator<T> self = this;
+			return new BSTSpliterator<T>(this, prefix, estimate) {
+				@Override
+				T read(Node<K,V> node) {
+					return self.read(node);
+				}
+			};
 		}
 
 		@Override
-		public boolean hasNext() {
-			return !bst.isEmpty();
+		public long estimateSize() {
+			return estimate;
 		}
 
 		@Override
-		public V next() {
-			if (hasNext()) {
-				return (bst.remove(0));
+		public int characteristics() {
+			return characteristics;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Comparator<? super T> getComparator() {
+			if ((characteristics & Spliterator.SORTED) != 0) {
+				return (Comparator<? super T>) comparator;
 			}
-			return null;
+			throw new IllegalStateException();
 		}
 
 	}
 
-}
\ No newline at end of file
+}
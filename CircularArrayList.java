@@ -1,10 +1,13 @@
-
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.RandomAccess;
+import java.util.function.Consumer;
 
 /**
  * A circular version of an array list.
@@ -13,37 +16,76 @@ import java.util.RandomAccess;
  * eliminates the shifting required when adding or removing elements to the
  * front of the ArrayList.
  * </p>
+ * <p>Everything that moves more than one element does it with
+ * System.arraycopy, splitting the copy where it wraps past the end of the
+ * array, and inserts and removes in the middle shift whichever side of the
+ * index is shorter.
+ * </p>
+ * <p>The capacity is always a power of two, so turning a list index into an
+ * array index is an add and a mask. It is also a Deque, so it can stand in
+ * for an ArrayDeque where indexed access is needed too. Unlike ArrayDeque
+ * it holds nulls, so a null from peek or poll can also mean a null element.
+ * </p>
+ * <p>A list made with bounded never grows or shrinks. Once it is full,
+ * adding at one end evicts the element at the other end, so it keeps only
+ * the last N elements in constant memory.
+ * </p>
  *
  * @author Charles Graven, cssc0199
  */
 public final class CircArrayList<E> extends AbstractList<E> implements
-        List<E>, RandomAccess {
+        List<E>, Deque<E>, RandomAccess {
 
     private E[] storage;
 
     private static final int DEFAULT_SIZE = 16;
-    
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
     private int curSize;
 
     private int frontCursor;
-    
-    private int backCursor;
-    
+
     private static final double HIGH_BOUND = .9;
-    
+
     private static final double LOW_BOUND = .25;
-    
+
+    /** Most elements a bounded list holds, 0 if it grows */
+    private final int bound;
+
+    private final Consumer<? super E> onEvict;
+
+    /** The one reversed view, made on first use */
+    private ReversedView reversedView;
+
     /**
      * Builds a new, empty CirArrayList.
      */
     public CircArrayList() {
         super();
-    	curSize = 0;
+        bound = 0;
+        onEvict = null;
+        curSize = 0;
         frontCursor = 0;
-        backCursor = 0;
         storage = (E[])new Object[DEFAULT_SIZE];
     }
 
+    /**
+     * Builds a new, empty CirArrayList with room for the given
+     * number of elements before it has to grow
+     *
+     * @param expectedSize elements to make room for
+     */
+    public CircArrayList(int expectedSize) {
+        if(expectedSize<0)
+            throw new IllegalArgumentException("Negative size: " + expectedSize);
+        bound = 0;
+        onEvict = null;
+        curSize = 0;
+        frontCursor = 0;
+        storage = (E[])new Object[capacityFor(expectedSize)];
+    }
+
     /**
      * Constructs a new CirArrayList containing all the items in the input
      * parameter.
@@ -51,16 +93,58 @@ public final class CircArrayList<E> extends AbstractList<E> implements
      * @param col the Collection from which to base
      */
     public CircArrayList(Collection<? extends E> col) {
-    	curSize = 0;
-    	storage = (E[])new Object[(col.size())];
-    	
-    	for(E e : col){
-    		storage[curSize] = e;
-    		curSize++;
-    	}
-    	
-    	backCursor = col.size()-1;
-    	frontCursor = 0;
+        bound = 0;
+        onEvict = null;
+        Object[] items = col.toArray();
+        storage = (E[])new Object[capacityFor(items.length)];
+        System.arraycopy(items, 0, storage, 0, items.length);
+        curSize = items.length;
+        frontCursor = 0;
+    }
+
+    /**
+     * Builds a bounded list, the whole array is made up front
+     *
+     * @param capacity most elements the list holds
+     * @param onEvict called with each element pushed out, may be null
+     */
+    private CircArrayList(int capacity, Consumer<? super E> onEvict) {
+        if(capacity<1 || capacity>MAXIMUM_CAPACITY)
+            throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        int length = 1;
+        while(length < capacity){
+            length <<= 1;
+        }
+        bound = capacity;
+        this.onEvict = onEvict;
+        curSize = 0;
+        frontCursor = 0;
+        storage = (E[])new Object[length];
+    }
+
+    /**
+     * Builds a list that holds at most capacity elements. When it is full
+     * addLast drops the first element and addFirst drops the last one, in
+     * O(1) and without allocating. Inserts in the middle and addAll throw
+     * IllegalStateException instead of going over the capacity
+     *
+     * @param capacity most elements the list holds
+     * @return the empty list
+     */
+    public static <E> CircArrayList<E> bounded(int capacity) {
+        return new CircArrayList<>(capacity, null);
+    }
+
+    /**
+     * Builds a bounded list that hands every element it evicts to a
+     * callback, after the new element is in place
+     *
+     * @param capacity most elements the list holds
+     * @param onEvict called with each element pushed out
+     * @return the empty list
+     */
+    public static <E> CircArrayList<E> bounded(int capacity, Consumer<? super E> onEvict) {
+        return new CircArrayList<>(capacity, onEvict);
     }
 
     /**
@@ -74,8 +158,8 @@ public final class CircArrayList<E> extends AbstractList<E> implements
     @Override
     public E get(int index) {
         if(index<0 || index>=size())
-        	throw new IndexOutOfBoundsException();
-       
+            throw new IndexOutOfBoundsException();
+
         return storage[toCircleIndex(index)];
     }
 
@@ -91,12 +175,11 @@ public final class CircArrayList<E> extends AbstractList<E> implements
      */
     @Override
     public E set(int index, E value) {
-    	if(index<0 || index>=size())
-        	throw new IndexOutOfBoundsException();
-    	E temp = storage[(toCircleIndex(index))];
-    	
-    	storage[toCircleIndex(index)] = value;
-    	
+        if(index<0 || index>=size())
+            throw new IndexOutOfBoundsException();
+        int i = toCircleIndex(index);
+        E temp = storage[i];
+        storage[i] = value;
         return temp;
     }
 
@@ -107,24 +190,19 @@ public final class CircArrayList<E> extends AbstractList<E> implements
      *
      * @param index index at which the specified element is to be inserted
      * @param value element to be inserted
+     * @throws IndexOutOfBoundsException if index is out of the range (index < 0
+     *                                   || index > size())
      */
     @Override
     public void add(int index, E value) {
-   
-    	if(index==0)
-        	addFirst(value);
+        if(index<0 || index>size())
+            throw new IndexOutOfBoundsException();
+        if(index==0)
+            addFirst(value);
         else if(index==size())
-        	addLast(value);
-        else 
-        	addMiddle(index, value);
-        
-    	curSize++;
-    	
-        //See if this works?
-        if((size()/((double)storage.length))>=HIGH_BOUND) {
-        	storage = arrayCopier(2);
-        }
-        
+            addLast(value);
+        else
+            addMiddle(index, value);
     }
 
     /**
@@ -134,23 +212,20 @@ public final class CircArrayList<E> extends AbstractList<E> implements
      *
      * @param index index of element to remove
      * @return the element previously at the specified position.
+     * @throws IndexOutOfBoundsException if index is out of the range (index < 0
+     *                                   || index >= size())
      */
     @Override
     public E remove(int index) {
-    	
-    	if(size()==0)
-    		throw new IndexOutOfBoundsException();
-    	
-    	if((size()/((double)storage.length))<=LOW_BOUND) {
-        	storage = arrayCopier(.5);
-        }
-    	if(index==0){
-        	return removeFirst();
+        if(index<0 || index>=size())
+            throw new IndexOutOfBoundsException();
+        if(index==0){
+            return removeFirst();
         }
         else if(index==size()-1){
-        	return removeLast();
+            return removeLast();
         }else{
-        	return removeMiddle(index);
+            return removeMiddle(index);
         }
     }
 
@@ -163,166 +238,732 @@ public final class CircArrayList<E> extends AbstractList<E> implements
     public int size() {
         return curSize;
     }
-    
+
     /**
      * Adds to the front of the array in O(1)
-     * this is done by keeping track of a cursor
-     * 
+     * this is done by keeping track of a cursor,
+     * a full bounded list evicts its last element
+     *
      * @param value element to be inserted
      */
     public void addFirst(E value){
-
-    	if(size()==0){
-    		storage[frontCursor]=value;
-    	}else if(frontCursor==0){
-    		frontCursor = storage.length-1;
-    		storage[frontCursor] = value;
-    	}else{ 
-    		--frontCursor;
-    		storage[frontCursor] = value;
-    	}
+        if(bound > 0 && curSize==bound){
+            int back = toCircleIndex(curSize-1);
+            E evicted = storage[back];
+            frontCursor = toCircleIndex(-1);
+            storage[frontCursor] = value;
+            if(back != frontCursor)
+                storage[back] = null;
+            changed();
+            evicted(evicted);
+            return;
+        }
+        ensureCapacity(curSize+1);
+        frontCursor = toCircleIndex(-1);
+        storage[frontCursor] = value;
+        curSize++;
+        changed();
     }
-    
+
     /**
      * Adds to the back of the array in O(1)
-     * this is done by keeping track of a cursor
-     * 
+     * this is done by keeping track of a cursor,
+     * a full bounded list evicts its first element
+     *
      * @param value element to be inserted
      */
     public void addLast(E value){
-    	if(size()==0){
-    		storage[0] = value;
-    		return;
-    	}else if(backCursor==storage.length-1){
-    		backCursor = 0;
-    		storage[backCursor] = value;
-    	}
-    	else{
-    		backCursor++;
-    		storage[backCursor] = value;
-    	}
-    }
-    
-    /**
-     * Adds an element to the middle of a circular array
-     * and deals with the fixing of indexes
-     * 
+        if(bound > 0 && curSize==bound){
+            E evicted = storage[frontCursor];
+            storage[frontCursor] = null;
+            frontCursor = toCircleIndex(1);
+            storage[toCircleIndex(curSize-1)] = value;
+            changed();
+            evicted(evicted);
+            return;
+        }
+        ensureCapacity(curSize+1);
+        storage[toCircleIndex(curSize)] = value;
+        curSize++;
+        changed();
+    }
+
+    /**
+     * Adds an element to the middle of a circular array, the elements
+     * on the shorter side of the index are shifted to make room
+     *
      * @param index index at which the specified element is to be inserted
      * @param value element to be inserted
      */
     public void addMiddle(int index, E value){
- 
-    	SortAdd(index);
-    	storage[toCircleIndex(index)] = value;
-    	if(backCursor==storage.length-1)
-    			backCursor = 0;
-    	else
-    		backCursor++;
-    }
-    
-    /**
-     * When added to the middle all the indexes
-     * to the right of the index need to be fixed
-     * 
-     * @param index at which the array should be fixed from
-     */
-    public void SortAdd(int index){
-    	
-    	for(int i = size(); index<i; i--){
-    		storage[toCircleIndex(i)] = storage[toCircleIndex(i-1)];
-    	}
-    }
-    
-    /**
-     * Removes the middle element of an array
-     * and fixes the gap made by the removal
-     * 
+        openGap(index, 1);
+        storage[toCircleIndex(index)] = value;
+    }
+
+    /**
+     * Removes the middle element of an array, the elements on
+     * the shorter side of the index are shifted to fill the gap
+     *
      * @param index where to remove from
      * @return element removed
      */
     public E removeMiddle(int index){
-    	--curSize;
-    	E temp = get(index);
-    	sortRemove(index);
-    	if(backCursor==0)
-			backCursor = storage.length-1;
-    	else
-    		--backCursor;
-    	return temp;
-    }
-    
-    /**
-     * When removed in the middle all the indexes
-     * to the left of the index need to be fixed
-     * 
-     * @param index at which the array should be fixed from
-     */
-    public void sortRemove(int index){
-    	for(int i = index; size()>i; i++){
-    		storage[toCircleIndex(i)] = storage[toCircleIndex(i+1)];
-    	}
+        E temp = storage[toCircleIndex(index)];
+        closeGap(index, 1);
+        return temp;
     }
-    
+
     /**
      * Removes the first element of the circular
      * aray by moving the front cursor
+     *
+     * @throws NoSuchElementException if the list is empty
      */
     public E removeFirst(){
-    	--curSize;
-    	if(frontCursor==storage.length-1){
-    		frontCursor = 0;
-    		return storage[storage.length-1];
-    	}
-    		
-    		return storage[frontCursor++];
+        if(curSize==0)
+            throw new NoSuchElementException();
+        E temp = storage[frontCursor];
+        storage[frontCursor] = null;
+        frontCursor = toCircleIndex(1);
+        curSize--;
+        changed();
+        shrinkIfSparse();
+        return temp;
     }
-    
+
     /**
      * Removes the last element of the circular
      * array by moving the back cursor
+     *
+     * @throws NoSuchElementException if the list is empty
      */
     public E removeLast(){
-    	--curSize;
-    	if(backCursor==0){
-    		backCursor = storage.length;
-    		return storage[0];
-    	}
-    		return storage[backCursor--];
+        if(curSize==0)
+            throw new NoSuchElementException();
+        int back = toCircleIndex(curSize-1);
+        E temp = storage[back];
+        storage[back] = null;
+        curSize--;
+        changed();
+        shrinkIfSparse();
+        return temp;
+    }
+
+    @Override
+    public boolean offerFirst(E value) {
+        addFirst(value);
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(E value) {
+        addLast(value);
+        return true;
+    }
+
+    @Override
+    public E pollFirst() {
+        return curSize==0 ? null : removeFirst();
+    }
+
+    @Override
+    public E pollLast() {
+        return curSize==0 ? null : removeLast();
+    }
+
+    @Override
+    public E getFirst() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return storage[frontCursor];
+    }
+
+    @Override
+    public E getLast() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return storage[toCircleIndex(curSize-1)];
+    }
+
+    @Override
+    public E peekFirst() {
+        return curSize==0 ? null : storage[frontCursor];
+    }
+
+    @Override
+    public E peekLast() {
+        return curSize==0 ? null : storage[toCircleIndex(curSize-1)];
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        return remove(o);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        int index = lastIndexOf(o);
+        if(index<0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean offer(E value) {
+        addLast(value);
+        return true;
+    }
+
+    @Override
+    public E remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public E poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public E element() {
+        return getFirst();
+    }
+
+    @Override
+    public E peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(E value) {
+        addFirst(value);
+    }
+
+    @Override
+    public E pop() {
+        return removeFirst();
+    }
+
+    /**
+     * @return an iterator from the last element to the first
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new DescendingIterator();
+    }
+
+    /**
+     * A view of the list back to front, changes to either one show up
+     * in the other. Declared since List and Deque both define reversed
+     * from JDK 21 on, as java.util.LinkedList does
+     *
+     * @return the list in reverse order
+     */
+    public ReversedView reversed() {
+        if(reversedView == null)
+            reversedView = new ReversedView();
+        return reversedView;
+    }
+
+    /**
+     * Counts a structural change, in the reversed view as well so
+     * its inherited iterators and sublists fail fast too
+     */
+    private void changed() {
+        modCount++;
+        if(reversedView != null)
+            reversedView.listChanged();
+    }
+
+    /**
+     * The list seen from the back, every call maps onto the opposite
+     * end or the mirrored index of the list it was made from
+     */
+    public final class ReversedView extends AbstractList<E> implements
+            Deque<E>, RandomAccess {
+
+        private ReversedView() {
+        }
+
+        private void listChanged() {
+            modCount++;
+        }
+
+        private int mirror(int index) {
+            return curSize-1-index;
+        }
+
+        @Override
+        public E get(int index) {
+            if(index<0 || index>=curSize)
+                throw new IndexOutOfBoundsException();
+            return CircArrayList.this.get(mirror(index));
+        }
+
+        @Override
+        public E set(int index, E value) {
+            if(index<0 || index>=curSize)
+                throw new IndexOutOfBoundsException();
+            return CircArrayList.this.set(mirror(index), value);
+        }
+
+        @Override
+        public void add(int index, E value) {
+            if(index<0 || index>curSize)
+                throw new IndexOutOfBoundsException();
+            CircArrayList.this.add(curSize-index, value);
+        }
+
+        @Override
+        public E remove(int index) {
+            if(index<0 || index>=curSize)
+                throw new IndexOutOfBoundsException();
+            return CircArrayList.this.remove(mirror(index));
+        }
+
+        @Override
+        public int size() {
+            return curSize;
+        }
+
+        @Override
+        public void clear() {
+            CircArrayList.this.clear();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return CircArrayList.this.descendingIterator();
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return CircArrayList.this.iterator();
+        }
+
+        /**
+         * @return the list this view was made from
+         */
+        public CircArrayList<E> reversed() {
+            return CircArrayList.this;
+        }
+
+        @Override
+        public boolean add(E value) {
+            addLast(value);
+            return true;
+        }
+
+        @Override
+        public void addFirst(E value) {
+            CircArrayList.this.addLast(value);
+        }
+
+        @Override
+        public void addLast(E value) {
+            CircArrayList.this.addFirst(value);
+        }
+
+        @Override
+        public boolean offerFirst(E value) {
+            return CircArrayList.this.offerLast(value);
+        }
+
+        @Override
+        public boolean offerLast(E value) {
+            return CircArrayList.this.offerFirst(value);
+        }
+
+        @Override
+        public E removeFirst() {
+            return CircArrayList.this.removeLast();
+        }
+
+        @Override
+        public E removeLast() {
+            return CircArrayList.this.removeFirst();
+        }
+
+        @Override
+        public E pollFirst() {
+            return CircArrayList.this.pollLast();
+        }
+
+        @Override
+        public E pollLast() {
+            return CircArrayList.this.pollFirst();
+        }
+
+        @Override
+        public E getFirst() {
+            return CircArrayList.this.getLast();
+        }
+
+        @Override
+        public E getLast() {
+            return CircArrayList.this.getFirst();
+        }
+
+        @Override
+        public E peekFirst() {
+            return CircArrayList.this.peekLast();
+        }
+
+        @Override
+        public E peekLast() {
+            return CircArrayList.this.peekFirst();
+        }
+
+        @Override
+        public boolean removeFirstOccurrence(Object o) {
+            return CircArrayList.this.removeLastOccurrence(o);
+        }
+
+        @Override
+        public boolean removeLastOccurrence(Object o) {
+            return CircArrayList.this.removeFirstOccurrence(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return removeFirstOccurrence(o);
+        }
+
+        @Override
+        public boolean offer(E value) {
+            return offerLast(value);
+        }
+
+        @Override
+        public E remove() {
+            return removeFirst();
+        }
+
+        @Override
+        public E poll() {
+            return pollFirst();
+        }
+
+        @Override
+        public E element() {
+            return getFirst();
+        }
+
+        @Override
+        public E peek() {
+            return peekFirst();
+        }
+
+        @Override
+        public void push(E value) {
+            addFirst(value);
+        }
+
+        @Override
+        public E pop() {
+            return removeFirst();
+        }
     }
-    
+
+    /**
+     * Walks the list back to front, fails fast when the list is
+     * changed behind its back and supports remove
+     */
+    private class DescendingIterator implements Iterator<E> {
+
+        int next = curSize-1;
+        int lastReturned = -1;
+        int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public E next() {
+            if(modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if(next < 0)
+                throw new NoSuchElementException();
+            lastReturned = next--;
+            return storage[toCircleIndex(lastReturned)];
+        }
+
+        @Override
+        public void remove() {
+            if(lastReturned < 0)
+                throw new IllegalStateException();
+            if(modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            CircArrayList.this.remove(lastReturned);
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Inserts all of the elements of a collection at the specified
+     * position, shifting the shorter side of the list once by the
+     * size of the collection instead of once per element
+     *
+     * @param index index at which to insert the first element
+     * @param col elements to be inserted
+     * @return true if the list changed
+     * @throws IndexOutOfBoundsException if index is out of the range (index < 0
+     *                                   || index > size())
+     */
+    @Override
+    public boolean addAll(int index, Collection<? extends E> col) {
+        if(index<0 || index>size())
+            throw new IndexOutOfBoundsException();
+        Object[] items = col.toArray();
+        if(items.length==0)
+            return false;
+        openGap(index, items.length);
+        copyIn(items, index);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> col) {
+        return addAll(size(), col);
+    }
+
+    /**
+     * Removes the elements from fromIndex, inclusive, up to toIndex,
+     * exclusive, shifting the shorter side of the list once to close the gap
+     *
+     * @param fromIndex index of the first element to remove
+     * @param toIndex index after the last element to remove
+     * @throws IndexOutOfBoundsException if fromIndex < 0 || toIndex > size()
+     *                                   || fromIndex > toIndex
+     */
+    @Override
+    public void removeRange(int fromIndex, int toIndex) {
+        if(fromIndex<0 || toIndex>size() || fromIndex>toIndex)
+            throw new IndexOutOfBoundsException();
+        if(fromIndex==toIndex)
+            return;
+        closeGap(fromIndex, toIndex-fromIndex);
+    }
+
+    @Override
+    public void clear() {
+        clearRange(0, curSize);
+        frontCursor = 0;
+        curSize = 0;
+        changed();
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] out = new Object[curSize];
+        copyOut(out, 0, curSize);
+        return out;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        if(a.length < curSize)
+            a = Arrays.copyOf(a, curSize);
+        copyOut(a, 0, curSize);
+        if(a.length > curSize)
+            a[curSize] = null;
+        return a;
+    }
+
+    /**
+     * @return true if the list was made with bounded
+     */
+    public boolean isBounded() {
+        return bound > 0;
+    }
+
+    /**
+     * @return the most elements a bounded list holds, or the
+     *         current array length of a list that grows
+     */
+    public int capacity() {
+        return bound > 0 ? bound : storage.length;
+    }
+
+    private void evicted(E value){
+        if(onEvict != null)
+            onEvict.accept(value);
+    }
+
     /**
      * Turns the desired index into an
-     * index that is useful for the circle array
-     * 
+     * index that is useful for the circle array,
+     * indexes just before 0 wrap to the end. The
+     * length is a power of two so this is one mask
+     *
      * @param arrIndex
      * @return proper circle index
      */
     private int toCircleIndex(int arrIndex){
-    	int j = frontCursor + arrIndex;
-    	
-    	if(j>(storage.length-1)){
-    		return j - storage.length;
-    	}
-    	return j;
-    }
-  
-    /**
-     * Takes a circular array and gives it a larger
-     * or smaller array based on the percentage change
-     * also resets the cursors for the circular array
-     * 
-     * @param percentage to change the array by
-     * @return the same array with a different size
-     */
-    private E[] arrayCopier(double percentage) {
-    	E[] newStorage = (E[])new Object[(int)(storage.length*percentage)];
-    	for(int i = 0; i < size(); i++){
-    			newStorage[i] = get(i);
-    	}
-    	frontCursor = 0;
-    	backCursor = size()-1;
-  
-    	return newStorage;
-    }
-    
-}
\ No newline at end of file
+        return (frontCursor + arrIndex) & (storage.length-1);
+    }
+
+    /**
+     * Makes room for count elements at index by shifting either the
+     * elements before it toward the front or the elements after it
+     * toward the back, whichever is fewer
+     *
+     * @param index where the gap starts
+     * @param count size of the gap
+     */
+    private void openGap(int index, int count){
+        ensureCapacity(curSize+count);
+        if(index < curSize-index){
+            move(0, -count, index);
+            frontCursor = toCircleIndex(-count);
+        }else{
+            move(index, index+count, curSize-index);
+        }
+        curSize += count;
+        changed();
+    }
+
+    /**
+     * Removes count elements at index by shifting either the elements
+     * before it toward the back or the elements after it toward the
+     * front, whichever is fewer, and clears the slots left behind
+     *
+     * @param index where the gap starts
+     * @param count size of the gap
+     */
+    private void closeGap(int index, int count){
+        int after = curSize-index-count;
+        if(index < after){
+            move(0, count, index);
+            clearRange(0, count);
+            frontCursor = toCircleIndex(count);
+        }else{
+            move(index+count, index, after);
+            clearRange(curSize-count, count);
+        }
+        curSize -= count;
+        changed();
+        shrinkIfSparse();
+    }
+
+    /**
+     * Copies length elements from list position from to list position
+     * to, which may overlap. Each arraycopy covers a run that does not
+     * wrap in either the source or the destination, so there are at most
+     * three, and the copies run back to front when moving toward the back
+     *
+     * @param from list position of the first element to move
+     * @param to list position it moves to, may be negative
+     * @param length number of elements to move
+     */
+    private void move(int from, int to, int length){
+        if(to > from){
+            while(length > 0){
+                int src = toCircleIndex(from+length-1);
+                int dst = toCircleIndex(to+length-1);
+                int run = Math.min(length, Math.min(src, dst)+1);
+                System.arraycopy(storage, src-run+1, storage, dst-run+1, run);
+                length -= run;
+            }
+        }else{
+            while(length > 0){
+                int src = toCircleIndex(from);
+                int dst = toCircleIndex(to);
+                int run = Math.min(length, storage.length-Math.max(src, dst));
+                System.arraycopy(storage, src, storage, dst, run);
+                from += run;
+                to += run;
+                length -= run;
+            }
+        }
+    }
+
+    /**
+     * Nulls out count slots from list position index, so removed
+     * elements can be garbage collected
+     */
+    private void clearRange(int index, int count){
+        int start = toCircleIndex(index);
+        int first = Math.min(count, storage.length-start);
+        Arrays.fill(storage, start, start+first, null);
+        Arrays.fill(storage, 0, count-first, null);
+    }
+
+    /**
+     * Copies the first count elements into an array in order,
+     * in at most two arraycopies
+     */
+    private void copyOut(Object[] dst, int dstPos, int count){
+        int first = Math.min(count, storage.length-frontCursor);
+        System.arraycopy(storage, frontCursor, dst, dstPos, first);
+        System.arraycopy(storage, 0, dst, dstPos+first, count-first);
+    }
+
+    /**
+     * Copies an array into the list starting at list position index,
+     * in at most two arraycopies
+     */
+    private void copyIn(Object[] src, int index){
+        int start = toCircleIndex(index);
+        int first = Math.min(src.length, storage.length-start);
+        System.arraycopy(src, 0, storage, start, first);
+        System.arraycopy(src, first, storage, 0, src.length-first);
+    }
+
+    /**
+     * @return the smallest doubling of DEFAULT_SIZE that
+     *         holds size elements below the HIGH_BOUND
+     */
+    private static int capacityFor(int size){
+        int capacity = DEFAULT_SIZE;
+        while(size >= capacity*HIGH_BOUND){
+            if(capacity == MAXIMUM_CAPACITY)
+                throw new IllegalStateException("List is too large");
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Grows the array once the HIGH_BOUND would be reached,
+     * so there is always a free slot for shifting
+     */
+    private void ensureCapacity(int size){
+        if(bound > 0){
+            if(size > bound)
+                throw new IllegalStateException("List is full");
+            return;
+        }
+        if(size >= storage.length*HIGH_BOUND){
+            arrayCopier(capacityFor(size));
+        }
+    }
+
+    /**
+     * Halves the array once it falls to the LOW_BOUND
+     */
+    private void shrinkIfSparse(){
+        if(bound==0 && storage.length > DEFAULT_SIZE && curSize <= storage.length*LOW_BOUND){
+            arrayCopier(storage.length/2);
+        }
+    }
+
+    /**
+     * Gives the circular array a larger or smaller array, copying
+     * the elements over in at most two pieces and resetting the
+     * front cursor to 0
+     *
+     * @param newSize length of the new array
+     */
+    private void arrayCopier(int newSize) {
+        E[] newStorage = (E[])new Object[newSize];
+        copyOut(newStorage, 0, curSize);
+        storage = newStorage;
+        frontCursor = 0;
+    }
+
+}
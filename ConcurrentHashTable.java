@@ -0,0 +1,503 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A thread safe version of the HashTable.
+ * <p>The table is split into segments, each one a small chained hash
+ * table with its own lock, so writers only block other writers that land
+ * in the same segment. Reads never lock: bucket heads are published
+ * through an AtomicReferenceArray and values and links are volatile, so a
+ * reader always sees a complete chain. Each segment resizes on its own
+ * under its lock, so resizes of different segments run in parallel and
+ * readers keep using the old buckets until the new ones are published.
+ * </p>
+ * <p>Null keys and values are not allowed, a null from getValue always
+ * means the key is missing. keys, values and getKey are weakly consistent,
+ * they never throw ConcurrentModificationException and may or may not see
+ * changes made while they run.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class ConcurrentHashTable<K extends Comparable<K>, V> implements MapADT<K,V> {
+
+	private static final int DEFAULT_SEGMENTS = 16;
+	private static final int MAX_SEGMENTS = 1 << 16;
+	private static final int MIN_SEGMENT_SIZE = 2;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	private static final double MAX = .75;
+
+	private final Segment<K,V>[] segments;
+	private final int segmentShift;
+	private final int segmentMask;
+
+	/**
+	 * Default Constructor
+	 */
+	public ConcurrentHashTable() {
+		this(16, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * Constructor that takes in a size and the number of
+	 * threads expected to write at the same time
+	 * @param size of the hashtable
+	 * @param concurrencyLevel number of segments, rounded up to a power of two
+	 */
+	public ConcurrentHashTable(int size, int concurrencyLevel) {
+		if(size < 0 || concurrencyLevel <= 0) {
+			throw new IllegalArgumentException();
+		}
+		int shift = 0;
+		int count = 1;
+		while(count < concurrencyLevel && count < MAX_SEGMENTS) {
+			count <<= 1;
+			shift++;
+		}
+		segmentShift = 32 - shift;
+		segmentMask = count - 1;
+
+		int perSegment = MIN_SEGMENT_SIZE;
+		while(perSegment * count < size && perSegment < MAXIMUM_CAPACITY) {
+			perSegment <<= 1;
+		}
+		segments = newSegments(count);
+		for(int i = 0; i < count; i++) {
+			segments[i] = new Segment<>(perSegment);
+		}
+	}
+
+	/**
+	 * @param count number of segments
+	 * @return an empty segment array
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K extends Comparable<K>,V> Segment<K,V>[] newSegments(int count) {
+		return (Segment<K,V>[]) new Segment<?,?>[count];
+	}
+
+	/**
+	 * Entry of a chain, the key and hash never change
+	 * @param <K> key
+	 * @param <V> value
+	 */
+	static final class Node<K,V> {
+		final K k;
+		final int hash;
+		volatile V v;
+		volatile Node<K,V> next;
+
+		Node(K key, int hash, V value, Node<K,V> next) {
+			k = key;
+			this.hash = hash;
+			v = value;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * One lock and the part of the table it guards
+	 * @param <K> key
+	 * @param <V> value
+	 */
+	static final class Segment<K extends Comparable<K>,V> extends ReentrantLock {
+
+		private static final long serialVersionUID = 1L;
+
+		volatile AtomicReferenceArray<Node<K,V>> table;
+		volatile int count;
+
+		Segment(int size) {
+			table = new AtomicReferenceArray<>(size);
+		}
+
+		/**
+		 * Walks one chain without locking
+		 * @param tab the table to read
+		 * @param key to look for
+		 * @param h spread hash of the key
+		 * @return the node holding the key or null
+		 */
+		Node<K,V> find(AtomicReferenceArray<Node<K,V>> tab, K key, int h) {
+			for(Node<K,V> e = tab.get(h & (tab.length()-1)); e != null; e = e.next) {
+				if(e.hash == h && (e.k == key || key.compareTo(e.k)==0)) {
+					return e;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Looks up a value without locking. If a resize published
+		 * new buckets during the walk the read is retried there, so
+		 * the value never comes from a node the writers left behind
+		 * @param key to look for
+		 * @param h spread hash of the key
+		 * @return the value or null
+		 */
+		V get(K key, int h) {
+			while(true) {
+				AtomicReferenceArray<Node<K,V>> tab = table;
+				Node<K,V> e = find(tab, key, h);
+				V value = e == null ? null : e.v;
+				if(tab == table) {
+					return value;
+				}
+			}
+		}
+
+		/**
+		 * Adds a new node to the head of its chain, must hold the lock
+		 */
+		void insert(K key, int h, V value) {
+			AtomicReferenceArray<Node<K,V>> tab = table;
+			int i = h & (tab.length()-1);
+			tab.set(i, new Node<>(key, h, value, tab.get(i)));
+			count = count + 1;
+			if(count >= tab.length() * MAX && tab.length() < MAXIMUM_CAPACITY) {
+				rehash();
+			}
+		}
+
+		/**
+		 * Unlinks a node from its chain, must hold the lock
+		 * @return the removed value or null if the key was missing
+		 */
+		V unlink(K key, int h) {
+			AtomicReferenceArray<Node<K,V>> tab = table;
+			int i = h & (tab.length()-1);
+			Node<K,V> prev = null;
+			for(Node<K,V> e = tab.get(i); e != null; prev = e, e = e.next) {
+				if(e.hash == h && (e.k == key || key.compareTo(e.k)==0)) {
+					if(prev == null) {
+						tab.set(i, e.next);
+					} else {
+						prev.next = e.next;
+					}
+					count = count - 1;
+					return e.v;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Doubles the buckets of this segment, must hold the lock.
+		 * The nodes are copied instead of relinked since readers may
+		 * still be walking the old chains
+		 */
+		void rehash() {
+			AtomicReferenceArray<Node<K,V>> oldTable = table;
+			AtomicReferenceArray<Node<K,V>> newTable = new AtomicReferenceArray<>(oldTable.length() << 1);
+			int mask = newTable.length()-1;
+			for(int i = 0; i < oldTable.length(); i++) {
+				for(Node<K,V> e = oldTable.get(i); e != null; e = e.next) {
+					int j = e.hash & mask;
+					newTable.set(j, new Node<>(e.k, e.hash, e.v, newTable.get(j)));
+				}
+			}
+			table = newTable;
+		}
+
+		/**
+		 * Empties the segment, must hold the lock
+		 */
+		void clear() {
+			table = new AtomicReferenceArray<>(table.length());
+			count = 0;
+		}
+	}
+
+	/**
+	 * Mixes the hash code of a key
+	 * @param key to hash
+	 * @return the spread hash
+	 */
+	private static int hash(Object key) {
+		return HashTable.MURMUR.applyAsInt(key.hashCode());
+	}
+
+	/**
+	 * Picks the segment from the high bits, the
+	 * low bits pick the bucket inside of it
+	 * @param h spread hash
+	 * @return the segment for the hash
+	 */
+	private Segment<K,V> segmentFor(int h) {
+		return segments[(h >>> segmentShift) & segmentMask];
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return getValue(key) != null;
+	}
+
+	@Override
+	public V getValue(K key) {
+		int h = hash(key);
+		return segmentFor(h).get(key, h);
+	}
+
+	@Override
+	public V add(K key, V value) {
+		if(value == null) {
+			throw new NullPointerException();
+		}
+		int h = hash(key);
+		Segment<K,V> s = segmentFor(h);
+		s.lock();
+		try {
+			Node<K,V> e = s.find(s.table, key, h);
+			if(e != null) {
+				V temp = e.v;
+				e.v = value;
+				return temp;
+			}
+			s.insert(key, h, value);
+			return null;
+		} finally {
+			s.unlock();
+		}
+	}
+
+	/**
+	 * Adds a mapping only if the key is missing, as one atomic step
+	 * @param key the key
+	 * @param value the value to add
+	 * @return the value already mapped to the key, or null if it was added
+	 */
+	public V putIfAbsent(K key, V value) {
+		if(value == null) {
+			throw new NullPointerException();
+		}
+		int h = hash(key);
+		Segment<K,V> s = segmentFor(h);
+		s.lock();
+		try {
+			Node<K,V> e = s.find(s.table, key, h);
+			if(e != null) {
+				return e.v;
+			}
+			s.insert(key, h, value);
+			return null;
+		} finally {
+			s.unlock();
+		}
+	}
+
+	/**
+	 * Returns the value of a key, computing and adding it first if the
+	 * key is missing. The lookup, the call and the insert are one atomic
+	 * step: the function runs at most once per missing key, while the
+	 * segment is locked, so it should be short and must not touch this table
+	 * @param key the key
+	 * @param mappingFunction computes the value, returning null adds nothing
+	 * @return the current or computed value
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		int h = hash(key);
+		Segment<K,V> s = segmentFor(h);
+		//Lock free fast path when the key is already there
+		V value = s.get(key, h);
+		if(value != null) {
+			return value;
+		}
+		s.lock();
+		try {
+			Node<K,V> e = s.find(s.table, key, h);
+			if(e != null) {
+				return e.v;
+			}
+			value = mappingFunction.apply(key);
+			if(value != null) {
+				s.insert(key, h, value);
+			}
+			return value;
+		} finally {
+			s.unlock();
+		}
+	}
+
+	/**
+	 * Adds the value if the key is missing, otherwise replaces the
+	 * value with the result of combining the old and the given one, as
+	 * one atomic step. The function runs while the segment is locked
+	 * @param key the key
+	 * @param value value to add or combine with
+	 * @param remappingFunction combines the old and given values, null deletes the key
+	 * @return the new value, or null if the key was deleted
+	 */
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		if(value == null) {
+			throw new NullPointerException();
+		}
+		int h = hash(key);
+		Segment<K,V> s = segmentFor(h);
+		s.lock();
+		try {
+			Node<K,V> e = s.find(s.table, key, h);
+			if(e == null) {
+				s.insert(key, h, value);
+				return value;
+			}
+			V merged = remappingFunction.apply(e.v, value);
+			if(merged == null) {
+				s.unlink(key, h);
+			} else {
+				e.v = merged;
+			}
+			return merged;
+		} finally {
+			s.unlock();
+		}
+	}
+
+	@Override
+	public boolean delete(K key) {
+		int h = hash(key);
+		Segment<K,V> s = segmentFor(h);
+		s.lock();
+		try {
+			return s.unlink(key, h) != null;
+		} finally {
+			s.unlock();
+		}
+	}
+
+	@Override
+	public K getKey(V value) {
+		for(Segment<K,V> s : segments) {
+			AtomicReferenceArray<Node<K,V>> tab = s.table;
+			for(int i = 0; i < tab.length(); i++) {
+				for(Node<K,V> e = tab.get(i); e != null; e = e.next) {
+					if(e.v.equals(value)) {
+						return e.k;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds up the segment counts, while writers are running
+	 * the result is only an estimate
+	 */
+	@Override
+	public int size() {
+		long sum = 0;
+		for(Segment<K,V> s : segments) {
+			sum += s.count;
+		}
+		return (int)Math.min(sum, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for(Segment<K,V> s : segments) {
+			if(s.count != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Empties one segment at a time, so entries added
+	 * by other threads while it runs may survive
+	 */
+	@Override
+	public void clear() {
+		for(Segment<K,V> s : segments) {
+			s.lock();
+			try {
+				s.clear();
+			} finally {
+				s.unlock();
+			}
+		}
+	}
+
+	@Override
+	public Iterator<K> keys() {
+		return new ConcurrentIterator<K>() {
+			@Override
+			public K next() {
+				return nextNode().k;
+			}
+		};
+	}
+
+	@Override
+	public Iterator<V> values() {
+		return new ConcurrentIterator<V>() {
+			@Override
+			public V next() {
+				return nextNode().v;
+			}
+		};
+	}
+
+	/**
+	 * Walks every segment without locking. It never fails on
+	 * concurrent changes, it sees each bucket as it was when
+	 * the iterator reached it
+	 */
+	abstract class ConcurrentIterator<T> implements Iterator<T> {
+
+		int segmentIndex;
+		int bucketIndex;
+		AtomicReferenceArray<Node<K,V>> tab;
+		Node<K,V> next;
+		Node<K,V> lastReturned;
+
+		ConcurrentIterator() {
+			advance();
+		}
+
+		/**
+		 * Moves next to the head of the next non empty bucket
+		 */
+		private void advance() {
+			while(next == null) {
+				if(tab != null && bucketIndex < tab.length()) {
+					next = tab.get(bucketIndex++);
+				} else if(segmentIndex < segments.length) {
+					tab = segments[segmentIndex++].table;
+					bucketIndex = 0;
+				} else {
+					return;
+				}
+			}
+		}
+
+		Node<K,V> nextNode() {
+			if(next == null) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			next = next.next;
+			advance();
+			return lastReturned;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public void remove() {
+			if(lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			delete(lastReturned.k);
+			lastReturned = null;
+		}
+	}
+}
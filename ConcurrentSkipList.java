@@ -0,0 +1,511 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free, thread safe ordered map built as a skip list.
+ * <p>Every node sits on the bottom level and on each level above it with
+ * probability one half, so a search skips most of the list by dropping
+ * down one level at a time and takes O(log n) steps on average. Links are
+ * AtomicMarkableReferences: a delete first marks the links of its node,
+ * which removes the key logically, and then any thread that walks past the
+ * marked node unlinks it with a compare and set. No thread ever blocks, and
+ * getValue and contains never write at all. Searches start on the highest
+ * level any node has reached instead of the top of the head, so a small
+ * list is not walked down 32 empty levels.
+ * </p>
+ * <p>Null keys and values are not allowed, a null from getValue always
+ * means the key is missing. Iterators, range, getKey and size are weakly
+ * consistent: they never throw ConcurrentModificationException and may or
+ * may not see changes made while they run.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class ConcurrentSkipList<K extends Comparable<K>, V> implements MapADT<K,V> {
+
+	private static final int MAX_LEVEL = 32;
+
+	private final Node<K,V> head = new Node<>(null, null, MAX_LEVEL-1);
+	private final LongAdder currentSize = new LongAdder();
+	/** Only ever rises, so a search never starts below a linked node's top level */
+	private final AtomicInteger highestLevel = new AtomicInteger();
+
+	/**
+	 * A key with its links on every level up to topLevel
+	 * @param <K> key
+	 * @param <V> value
+	 */
+	static final class Node<K,V> {
+
+		/** Field updaters only see the erased type of v */
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+				AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "v");
+
+		final K k;
+		volatile V v;
+		final AtomicMarkableReference<Node<K,V>>[] next;
+		final int topLevel;
+
+		@SuppressWarnings("unchecked")
+		Node(K key, V value, int topLevel) {
+			k = key;
+			v = value;
+			this.topLevel = topLevel;
+			next = (AtomicMarkableReference<Node<K,V>>[]) new AtomicMarkableReference<?>[topLevel+1];
+			for (int i = 0; i <= topLevel; i++) {
+				next[i] = new AtomicMarkableReference<>(null, false);
+			}
+		}
+
+		/**
+		 * Swaps in a new value atomically
+		 * @param value the new value
+		 * @return the value it replaced
+		 */
+		@SuppressWarnings("unchecked")
+		V getAndSetValue(V value) {
+			return (V) VALUE.getAndSet(this, value);
+		}
+
+		boolean isDeleted() {
+			return next[0].isMarked();
+		}
+	}
+
+	/**
+	 * @return an array with one slot per level for find to fill
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K,V> Node<K,V>[] newPath() {
+		return (Node<K,V>[]) new Node<?,?>[MAX_LEVEL];
+	}
+
+	/**
+	 * Picks how many levels a new node lives on, each
+	 * level above the bottom has half the chance of the last
+	 */
+	private static int randomLevel() {
+		return Integer.numberOfTrailingZeros(ThreadLocalRandom.current().nextInt() | (1 << (MAX_LEVEL-1)));
+	}
+
+	/**
+	 * Raises the highest level in use to at least level
+	 * @param level top level of a node about to be linked
+	 */
+	private void raiseLevel(int level) {
+		int highest;
+		while ((highest = highestLevel.get()) < level && !highestLevel.compareAndSet(highest, level)) {
+		}
+	}
+
+	/**
+	 * Finds the last node before the key and the first node at or after
+	 * it on every level in use, unlinking any marked nodes it walks past
+	 * @param key to look for
+	 * @param preds filled with the node before the key on each level
+	 * @param succs filled with the node at or after the key on each level
+	 * @return true if the bottom level holds the key
+	 */
+	private boolean find(K key, Node<K,V>[] preds, Node<K,V>[] succs) {
+		boolean[] marked = {false};
+		retry:
+		while (true) {
+			Node<K,V> pred = head;
+			for (int level = highestLevel.get(); level >= 0; level--) {
+				Node<K,V> curr = pred.next[level].getReference();
+				while (curr != null) {
+					Node<K,V> succ = curr.next[level].get(marked);
+					while (marked[0]) {
+						if (!pred.next[level].compareAndSet(curr, succ, false, false)) {
+							continue retry;
+						}
+						curr = succ;
+						if (curr == null) {
+							break;
+						}
+						succ = curr.next[level].get(marked);
+					}
+					if (curr != null && curr.k.compareTo(key) < 0) {
+						pred = curr;
+						curr = succ;
+					} else {
+						break;
+					}
+				}
+				preds[level] = pred;
+				succs[level] = curr;
+			}
+			return succs[0] != null && succs[0].k.compareTo(key) == 0;
+		}
+	}
+
+	/**
+	 * Walks down to the bottom level node holding a key without writing
+	 * anything, marked nodes are stepped over instead of unlinked
+	 * @param key to look for
+	 * @return the live node holding the key or null
+	 */
+	private Node<K,V> searchNode(K key) {
+		boolean[] marked = {false};
+		Node<K,V> pred = head;
+		Node<K,V> curr = null;
+		for (int level = highestLevel.get(); level >= 0; level--) {
+			curr = pred.next[level].getReference();
+			while (curr != null) {
+				Node<K,V> succ = curr.next[level].get(marked);
+				while (marked[0]) {
+					curr = succ;
+					if (curr == null) {
+						break;
+					}
+					succ = curr.next[level].get(marked);
+				}
+				if (curr != null && curr.k.compareTo(key) < 0) {
+					pred = curr;
+					curr = succ;
+				} else {
+					break;
+				}
+			}
+		}
+		if (curr != null && curr.k.compareTo(key) == 0 && !curr.isDeleted()) {
+			return curr;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return searchNode(key) != null;
+	}
+
+	@Override
+	public V getValue(K key) {
+		Node<K,V> node = searchNode(key);
+		return node == null ? null : node.v;
+	}
+
+	@Override
+	public V add(K key, V value) {
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		int topLevel = randomLevel();
+		//Publish the level before searching so every find fills in all levels of the node
+		raiseLevel(topLevel);
+		Node<K,V>[] preds = newPath();
+		Node<K,V>[] succs = newPath();
+		while (true) {
+			if (find(key, preds, succs)) {
+				Node<K,V> node = succs[0];
+				if (node.isDeleted()) {
+					//Lost a race with delete, wait for it to be unlinked
+					continue;
+				}
+				return node.getAndSetValue(value);
+			}
+			Node<K,V> newNode = new Node<>(key, value, topLevel);
+			for (int level = 0; level <= topLevel; level++) {
+				newNode.next[level].set(succs[level], false);
+			}
+			//Linking the bottom level is the moment the key is added
+			if (!preds[0].next[0].compareAndSet(succs[0], newNode, false, false)) {
+				continue;
+			}
+			currentSize.increment();
+			for (int level = 1; level <= topLevel; level++) {
+				while (true) {
+					Node<K,V> succ = succs[level];
+					Node<K,V> link = newNode.next[level].getReference();
+					if (newNode.next[level].isMarked()) {
+						//Already being deleted, stop building it up
+						return null;
+					}
+					if (link != succ && !newNode.next[level].compareAndSet(link, succ, false, false)) {
+						continue;
+					}
+					if (preds[level].next[level].compareAndSet(succ, newNode, false, false)) {
+						break;
+					}
+					find(key, preds, succs);
+					if (succs[0] != newNode) {
+						return null;
+					}
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public boolean delete(K key) {
+		Node<K,V>[] preds = newPath();
+		Node<K,V>[] succs = newPath();
+		if (!find(key, preds, succs)) {
+			return false;
+		}
+		Node<K,V> node = succs[0];
+		boolean[] marked = {false};
+		for (int level = node.topLevel; level >= 1; level--) {
+			Node<K,V> succ = node.next[level].get(marked);
+			while (!marked[0]) {
+				node.next[level].compareAndSet(succ, succ, false, true);
+				succ = node.next[level].get(marked);
+			}
+		}
+		//Marking the bottom level is the moment the key is deleted
+		Node<K,V> succ = node.next[0].get(marked);
+		while (true) {
+			boolean iMarkedIt = node.next[0].compareAndSet(succ, succ, false, true);
+			succ = node.next[0].get(marked);
+			if (iMarkedIt) {
+				currentSize.decrement();
+				find(key, preds, succs);
+				return true;
+			} else if (marked[0]) {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public K getKey(V value) {
+		for (Node<K,V> node = firstNode(); node != null; node = nextNode(node)) {
+			if (node.v.equals(value)) {
+				return node.k;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return (int) Math.max(0, Math.min(currentSize.sum(), Integer.MAX_VALUE));
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return firstNode() == null;
+	}
+
+	/**
+	 * Deletes every key one at a time, keys added by
+	 * other threads while it runs may survive
+	 */
+	@Override
+	public void clear() {
+		for (Node<K,V> node = firstNode(); node != null; node = nextNode(node)) {
+			delete(node.k);
+		}
+	}
+
+	/**
+	 * @return the first live node on the bottom level or null
+	 */
+	private Node<K,V> firstNode() {
+		Node<K,V> node = head.next[0].getReference();
+		while (node != null && node.isDeleted()) {
+			node = node.next[0].getReference();
+		}
+		return node;
+	}
+
+	/**
+	 * @return the next live node after node on the bottom level or null
+	 */
+	private Node<K,V> nextNode(Node<K,V> node) {
+		node = node.next[0].getReference();
+		while (node != null && node.isDeleted()) {
+			node = node.next[0].getReference();
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the first live node whose key is after the given key
+	 * @param key to compare against
+	 * @param inclusive true to also accept the key itself
+	 * @return the node or null if there is none
+	 */
+	private Node<K,V> ceilingNode(K key, boolean inclusive) {
+		Node<K,V>[] preds = newPath();
+		Node<K,V>[] succs = newPath();
+		boolean found = find(key, preds, succs);
+		Node<K,V> node = succs[0];
+		if (node != null && ((found && !inclusive) || node.isDeleted())) {
+			node = nextNode(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the last live node whose key is before the given key. If the
+	 * node found is deleted before it is read the walk starts over
+	 * @param key to compare against, null for no bound
+	 * @param inclusive true to also accept the key itself
+	 * @return the node or null if there is none
+	 */
+	private Node<K,V> floorNode(K key, boolean inclusive) {
+		while (true) {
+			Node<K,V> pred = head;
+			for (int level = highestLevel.get(); level >= 0; level--) {
+				Node<K,V> curr = pred.next[level].getReference();
+				while (curr != null) {
+					int comp = key == null ? -1 : curr.k.compareTo(key);
+					if (comp < 0 || (comp == 0 && inclusive)) {
+						if (!curr.isDeleted()) {
+							pred = curr;
+						}
+						curr = curr.next[level].getReference();
+					} else {
+						break;
+					}
+				}
+			}
+			if (pred == head) {
+				return null;
+			}
+			if (!pred.isDeleted()) {
+				return pred;
+			}
+		}
+	}
+
+	/**
+	 * @return the largest key less than or equal to the given key, or null
+	 */
+	public K floorKey(K key) {
+		Node<K,V> node = floorNode(key, true);
+		return node == null ? null : node.k;
+	}
+
+	/**
+	 * @return the largest key strictly less than the given key, or null
+	 */
+	public K lowerKey(K key) {
+		Node<K,V> node = floorNode(key, false);
+		return node == null ? null : node.k;
+	}
+
+	/**
+	 * @return the smallest key greater than or equal to the given key, or null
+	 */
+	public K ceilingKey(K key) {
+		Node<K,V> node = ceilingNode(key, true);
+		return node == null ? null : node.k;
+	}
+
+	/**
+	 * @return the smallest key strictly greater than the given key, or null
+	 */
+	public K higherKey(K key) {
+		Node<K,V> node = ceilingNode(key, false);
+		return node == null ? null : node.k;
+	}
+
+	/**
+	 * @return the smallest key or null if the list is empty
+	 */
+	public K firstKey() {
+		Node<K,V> node = firstNode();
+		return node == null ? null : node.k;
+	}
+
+	/**
+	 * @return the largest key or null if the list is empty
+	 */
+	public K lastKey() {
+		Node<K,V> node = floorNode(null, true);
+		return node == null ? null : node.k;
+	}
+
+	/**
+	 * Iterates in order over the keys from from, inclusive, up to to,
+	 * exclusive. The list is searched once for the first key and then
+	 * walked along the bottom level, O(log n + k) for k keys
+	 * @param from lowest key to return, null to start at the first key
+	 * @param to key to stop before, null to run to the last key
+	 * @return an iterator over the keys in the range
+	 */
+	public Iterator<K> range(K from, K to) {
+		Node<K,V> start = from == null ? firstNode() : ceilingNode(from, true);
+		return new SkipListIterator<K>(start, to) {
+			@Override
+			K read(Node<K,V> node) {
+				return node.k;
+			}
+		};
+	}
+
+	@Override
+	public Iterator<K> keys() {
+		return range(null, null);
+	}
+
+	@Override
+	public Iterator<V> values() {
+		return new SkipListIterator<V>(firstNode(), null) {
+			@Override
+			V read(Node<K,V> node) {
+				return node.v;
+			}
+		};
+	}
+
+	/**
+	 * Walks the bottom level skipping deleted nodes
+	 */
+	abstract class SkipListIterator<T> implements Iterator<T> {
+
+		Node<K,V> next;
+		K to;
+		Node<K,V> lastReturned;
+
+		SkipListIterator(Node<K,V> start, K to) {
+			this.to = to;
+			next = start;
+			checkBound();
+		}
+
+		private void checkBound() {
+			if (next != null && to != null && next.k.compareTo(to) >= 0) {
+				next = null;
+			}
+		}
+
+		abstract T read(Node<K,V> node);
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			T temp = read(next);
+			next = nextNode(next);
+			checkBound();
+			return temp;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			delete(lastReturned.k);
+			lastReturned = null;
+		}
+	}
+}
@@ -0,0 +1,514 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A version of the CircArrayList holding primitive doubles.
+ * <p>Works like the LongCircArrayList. The running sum is compensated
+ * (Kahan-Babuska summation): the low order bits each addition rounds away
+ * are collected in a second double, so adding and removing millions of
+ * samples does not drift away from the true sum of the window. NaN and
+ * infinite values are counted instead of summed so they never poison the
+ * running sum, and if the finite values overflow it the sum is rescanned
+ * until it fits in a double again. min and max come from monotonic queues
+ * as in the LongCircArrayList, and are NaN while the window holds a NaN.
+ * </p>
+ */
+public final class DoubleCircArrayList {
+
+    private static final int DEFAULT_SIZE = 16;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /** Power of two a rescan divides by once a prefix of the window overflows */
+    private static final int OVERFLOW_SCALE = 64;
+
+    private double[] storage;
+
+    private int curSize;
+
+    private int frontCursor;
+
+    private int modCount;
+
+    private double sum;
+
+    private double compensation;
+
+    private boolean sumValid = true;
+
+    private int nans;
+
+    private int positiveInfinities;
+
+    private int negativeInfinities;
+
+    private int frontPosition;
+
+    private final PositionDeque minQueue = new PositionDeque();
+
+    private final PositionDeque maxQueue = new PositionDeque();
+
+    private boolean extremesValid = true;
+
+    /**
+     * Builds a new, empty list.
+     */
+    public DoubleCircArrayList() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Builds a new, empty list with room for the given
+     * number of values before it has to grow
+     *
+     * @param expectedSize values to make room for
+     */
+    public DoubleCircArrayList(int expectedSize) {
+        if(expectedSize<0)
+            throw new IllegalArgumentException("Negative size: " + expectedSize);
+        int capacity = DEFAULT_SIZE;
+        while(capacity < expectedSize && capacity < MAXIMUM_CAPACITY){
+            capacity <<= 1;
+        }
+        storage = new double[capacity];
+    }
+
+    /**
+     * @param index index (0 based) of the value to return.
+     * @return value at the specified position in the list.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0
+     *                                   || index >= size())
+     */
+    public double getDouble(int index) {
+        if(index<0 || index>=curSize)
+            throw new IndexOutOfBoundsException();
+        return storage[toCircleIndex(index)];
+    }
+
+    /**
+     * Replaces the value at the specified position in this list.
+     *
+     * @param index index of the value to replace
+     * @param value value to be stored at the specified position
+     * @return value previously at the specified position
+     * @throws IndexOutOfBoundsException if index is out of the range (index < 0
+     *                                   || index >= size())
+     */
+    public double setDouble(int index, double value) {
+        if(index<0 || index>=curSize)
+            throw new IndexOutOfBoundsException();
+        int i = toCircleIndex(index);
+        double temp = storage[i];
+        storage[i] = value;
+        leave(temp);
+        enter(value);
+        extremesValid = false;
+        return temp;
+    }
+
+    public int size() {
+        return curSize;
+    }
+
+    public boolean isEmpty() {
+        return curSize==0;
+    }
+
+    /**
+     * Adds to the front of the ring in O(1)
+     *
+     * @param value value to be inserted
+     */
+    public void addFirst(double value){
+        if(curSize==storage.length)
+            arrayCopier(storage.length*2);
+        frontCursor = toCircleIndex(-1);
+        frontPosition--;
+        storage[frontCursor] = value;
+        curSize++;
+        modCount++;
+        enter(value);
+        pushFront(frontPosition, value);
+    }
+
+    /**
+     * Adds to the back of the ring in O(1)
+     *
+     * @param value value to be inserted
+     */
+    public void addLast(double value){
+        if(curSize==storage.length)
+            arrayCopier(storage.length*2);
+        storage[toCircleIndex(curSize)] = value;
+        curSize++;
+        modCount++;
+        enter(value);
+        pushBack(frontPosition+curSize-1, value);
+    }
+
+    /**
+     * Removes the first value of the ring by moving the front cursor
+     *
+     * @return the value removed
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double removeFirst(){
+        if(curSize==0)
+            throw new NoSuchElementException();
+        double temp = storage[frontCursor];
+        frontCursor = toCircleIndex(1);
+        frontPosition++;
+        curSize--;
+        modCount++;
+        leave(temp);
+        popFront(frontPosition-1);
+        shrinkIfSparse();
+        return temp;
+    }
+
+    /**
+     * Removes the last value of the ring
+     *
+     * @return the value removed
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double removeLast(){
+        if(curSize==0)
+            throw new NoSuchElementException();
+        double temp = storage[toCircleIndex(curSize-1)];
+        curSize--;
+        modCount++;
+        leave(temp);
+        popBack(temp);
+        shrinkIfSparse();
+        return temp;
+    }
+
+    /**
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double getFirst() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return storage[frontCursor];
+    }
+
+    /**
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double getLast() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return storage[toCircleIndex(curSize-1)];
+    }
+
+    public void clear() {
+        frontCursor = 0;
+        curSize = 0;
+        modCount++;
+        sum = 0;
+        compensation = 0;
+        sumValid = true;
+        nans = 0;
+        positiveInfinities = 0;
+        negativeInfinities = 0;
+        frontPosition = 0;
+        minQueue.clear();
+        maxQueue.clear();
+        extremesValid = true;
+    }
+
+    /**
+     * Copies the values into an array in order, in at most two
+     * arraycopies. A new array is made if the given one is too short
+     *
+     * @param a array to fill
+     * @return the filled array
+     */
+    public double[] toArray(double[] a) {
+        if(a.length < curSize)
+            a = new double[curSize];
+        int first = Math.min(curSize, storage.length-frontCursor);
+        System.arraycopy(storage, frontCursor, a, 0, first);
+        System.arraycopy(storage, 0, a, first, curSize-first);
+        return a;
+    }
+
+    public double[] toArray() {
+        return toArray(new double[curSize]);
+    }
+
+    /**
+     * @return the compensated sum of the values, O(1) unless the
+     *         finite values overflowed it and it has to be rescanned
+     */
+    public double sum() {
+        if(nans > 0 || (positiveInfinities > 0 && negativeInfinities > 0))
+            return Double.NaN;
+        if(positiveInfinities > 0)
+            return Double.POSITIVE_INFINITY;
+        if(negativeInfinities > 0)
+            return Double.NEGATIVE_INFINITY;
+        if(!sumValid){
+            sum = 0;
+            compensation = 0;
+            sumValid = true;
+            for(int i = 0; i < curSize; i++){
+                accumulate(storage[toCircleIndex(i)]);
+            }
+            if(!sumValid){
+                //Some prefix overflowed, add the values scaled down where
+                //none can and scale the total back up, which only
+                //overflows if the sum of the window really does
+                sum = 0;
+                compensation = 0;
+                sumValid = true;
+                for(int i = 0; i < curSize; i++){
+                    accumulate(Math.scalb(storage[toCircleIndex(i)], -OVERFLOW_SCALE));
+                }
+                sum = Math.scalb(sum, OVERFLOW_SCALE);
+                compensation = Math.scalb(compensation, OVERFLOW_SCALE);
+                sumValid = Double.isFinite(sum);
+                if(!sumValid)
+                    return sum;
+            }
+        }
+        return sum + compensation;
+    }
+
+    /**
+     * @return the mean of the values in O(1)
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double mean() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return sum() / curSize;
+    }
+
+    /**
+     * @return the smallest value, O(1) unless the queues have to
+     *         be rebuilt, NaN if any value is NaN, -0.0 is below 0.0
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double min() {
+        checkExtremes();
+        return nans > 0 ? Double.NaN : valueAt(minQueue.peekFirst());
+    }
+
+    /**
+     * @return the largest value, O(1) unless the queues have to
+     *         be rebuilt, NaN if any value is NaN, 0.0 is above -0.0
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double max() {
+        checkExtremes();
+        return nans > 0 ? Double.NaN : valueAt(maxQueue.peekFirst());
+    }
+
+    /**
+     * Updates the sum for a value joining the list, NaN and
+     * infinite values are only counted
+     */
+    private void enter(double value){
+        if(curSize==1){
+            sum = 0;
+            compensation = 0;
+            sumValid = true;
+        }
+        if(value != value)
+            nans++;
+        else if(value == Double.POSITIVE_INFINITY)
+            positiveInfinities++;
+        else if(value == Double.NEGATIVE_INFINITY)
+            negativeInfinities++;
+        else if(sumValid)
+            accumulate(value);
+    }
+
+    /**
+     * Updates the sum for a value leaving the list
+     */
+    private void leave(double value){
+        if(value != value)
+            nans--;
+        else if(value == Double.POSITIVE_INFINITY)
+            positiveInfinities--;
+        else if(value == Double.NEGATIVE_INFINITY)
+            negativeInfinities--;
+        else if(sumValid)
+            accumulate(-value);
+    }
+
+    /**
+     * Adds a finite value to the running sum, keeping what rounding
+     * loses in the compensation. Whichever of the sum and the value is
+     * smaller is the one whose low bits get rounded away. A sum that
+     * overflows is dropped, subtracting from an infinity later would
+     * only give NaN, and sum rescans the window
+     */
+    private void accumulate(double value){
+        double t = sum + value;
+        if(!Double.isFinite(t)){
+            sum = t;
+            sumValid = false;
+            return;
+        }
+        if(Math.abs(sum) >= Math.abs(value))
+            compensation += (sum - t) + value;
+        else
+            compensation += (value - t) + sum;
+        sum = t;
+    }
+
+    /**
+     * @return the value at a position counted the way frontPosition is
+     */
+    private double valueAt(int position){
+        return storage[toCircleIndex(position - frontPosition)];
+    }
+
+    /**
+     * Queues a value that joined at the back. The values before it that
+     * it beats can never be the min or max again, so they are dropped.
+     * NaN is kept out of the queues, it is only counted
+     */
+    private void pushBack(int position, double value){
+        if(!extremesValid || value != value)
+            return;
+        queueMin(position, value);
+        queueMax(position, value);
+    }
+
+    private void queueMin(int position, double value){
+        while(!minQueue.isEmpty() && Double.compare(valueAt(minQueue.peekLast()), value) >= 0)
+            minQueue.removeLast();
+        minQueue.addLast(position);
+    }
+
+    private void queueMax(int position, double value){
+        while(!maxQueue.isEmpty() && Double.compare(valueAt(maxQueue.peekLast()), value) <= 0)
+            maxQueue.removeLast();
+        maxQueue.addLast(position);
+    }
+
+    /**
+     * Queues a value that joined at the front, it only matters
+     * once everything after it is gone if it is a new min or max
+     */
+    private void pushFront(int position, double value){
+        if(!extremesValid || value != value)
+            return;
+        if(minQueue.isEmpty() || Double.compare(value, valueAt(minQueue.peekFirst())) < 0)
+            minQueue.addFirst(position);
+        if(maxQueue.isEmpty() || Double.compare(value, valueAt(maxQueue.peekFirst())) > 0)
+            maxQueue.addFirst(position);
+    }
+
+    /**
+     * Drops a value that left from the front, which is
+     * the head of a queue if it was still a candidate
+     */
+    private void popFront(int position){
+        if(!extremesValid)
+            return;
+        if(!minQueue.isEmpty() && minQueue.peekFirst()==position)
+            minQueue.removeFirst();
+        if(!maxQueue.isEmpty() && maxQueue.peekFirst()==position)
+            maxQueue.removeFirst();
+    }
+
+    /**
+     * Drops the value that left from the back, the tail of both queues
+     * unless it was NaN. As in the LongCircArrayList the queues are only
+     * kept if the new last value is the new tail of both, otherwise they
+     * are rebuilt on the next min or max
+     */
+    private void popBack(double value){
+        if(!extremesValid || value != value)
+            return;
+        int last = frontPosition + curSize - 1;
+        minQueue.removeLast();
+        maxQueue.removeLast();
+        if(curSize > 0 && (minQueue.isEmpty() || minQueue.peekLast() != last
+                || maxQueue.isEmpty() || maxQueue.peekLast() != last))
+            extremesValid = false;
+    }
+
+    /**
+     * Rebuilds the queues from the whole list after a set or a
+     * removeLast that left them stale
+     */
+    private void checkExtremes(){
+        if(curSize==0)
+            throw new NoSuchElementException();
+        if(extremesValid)
+            return;
+        minQueue.clear();
+        maxQueue.clear();
+        extremesValid = true;
+        for(int i = 0; i < curSize; i++)
+            pushBack(frontPosition+i, storage[toCircleIndex(i)]);
+    }
+
+    /**
+     * @return an iterator over the values front to back
+     */
+    public PrimitiveIterator.OfDouble iterator() {
+        return new PrimitiveIterator.OfDouble() {
+            int next = 0;
+            int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < curSize;
+            }
+
+            @Override
+            public double nextDouble() {
+                if(modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if(next >= curSize)
+                    throw new NoSuchElementException();
+                return storage[toCircleIndex(next++)];
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Turns the desired index into an index that is useful
+     * for the circle array, the length is a power of two
+     */
+    private int toCircleIndex(int arrIndex){
+        return (frontCursor + arrIndex) & (storage.length-1);
+    }
+
+    /**
+     * Halves the array once it is a quarter full
+     */
+    private void shrinkIfSparse(){
+        if(storage.length > DEFAULT_SIZE && curSize <= storage.length/4)
+            arrayCopier(storage.length/2);
+    }
+
+    /**
+     * Gives the ring a larger or smaller array, copying the values
+     * over in at most two pieces and resetting the front cursor to 0
+     *
+     * @param newSize length of the new array
+     */
+    private void arrayCopier(int newSize) {
+        if(newSize > MAXIMUM_CAPACITY)
+            throw new IllegalStateException("List is too large");
+        storage = toArray(new double[newSize]);
+        frontCursor = 0;
+    }
+
+}
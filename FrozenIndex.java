@@ -0,0 +1,371 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A read only sorted map stored in two flat arrays.
+ * <p>Keys are laid out in Eytzinger order, the order of a breadth first
+ * walk of a perfectly balanced tree: the root is at 1 and the children of
+ * k are at 2k and 2k+1. A search is the same walk down a tree, but with no
+ * nodes or pointers, so it takes a fraction of the memory of a
+ * BinarySearchTree, and the top levels that every search touches sit next
+ * to each other in a few cache lines. The loop only picks 2k or 2k+1 from
+ * the result of one compare, which the JIT can turn into a conditional
+ * move instead of a branch, and the answer is read off the bits of k once
+ * it falls off the bottom.
+ * </p>
+ * <p>Build one with freeze on a BinarySearchTree or with of on any
+ * MapADT whose keys iterate in order. add, delete and clear throw
+ * UnsupportedOperationException.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public final class FrozenIndex<K extends Comparable<K>, V> implements MapADT<K,V> {
+
+	private final K[] keys;
+	private final V[] values;
+	private final int currentSize;
+	private final Comparator<? super K> comparator;
+
+	/**
+	 * @param sortedKeys keys in strictly increasing order
+	 * @param sortedValues values in the same order as their keys
+	 * @param comparator the key order, null for the natural order
+	 */
+	@SuppressWarnings("unchecked")
+	private FrozenIndex(List<K> sortedKeys, List<V> sortedValues, Comparator<? super K> comparator) {
+		this.comparator = comparator;
+		currentSize = sortedKeys.size();
+		if (currentSize >= (1 << 30)) {
+			throw new IllegalArgumentException("Too many keys: " + currentSize);
+		}
+		keys = (K[]) new Comparable<?>[currentSize + 1];
+		values = (V[]) new Object[currentSize + 1];
+		layout(sortedKeys, sortedValues, 0, 1);
+	}
+
+	/**
+	 * Freezes a map whose keys and values both iterate in key order,
+	 * such as a BinarySearchTree, BPlusTree or ConcurrentSkipList
+	 * @param map the map to copy
+	 * @return an index holding the same entries
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public static <K extends Comparable<K>, V> FrozenIndex<K,V> of(MapADT<K,V> map) {
+		return of(map, null);
+	}
+
+	/**
+	 * Freezes a map whose keys and values both iterate in the order
+	 * of the given comparator
+	 * @param map the map to copy
+	 * @param comparator the key order, null for the natural order
+	 * @return an index holding the same entries
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public static <K extends Comparable<K>, V> FrozenIndex<K,V> of(MapADT<K,V> map, Comparator<? super K> comparator) {
+		return of(map.keys(), map.values(), comparator);
+	}
+
+	/**
+	 * Freezes entries handed over as keys and values in matching order
+	 * @param keys keys in strictly increasing order
+	 * @param values the value of each key, in the same order
+	 * @param comparator the key order, null for the natural order
+	 * @return an index holding the entries
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 *         or there are not as many values as keys
+	 */
+	public static <K extends Comparable<K>, V> FrozenIndex<K,V> of(Iterator<K> keys, Iterator<V> values,
+			Comparator<? super K> comparator) {
+		List<K> sortedKeys = new ArrayList<>();
+		List<V> sortedValues = new ArrayList<>();
+		K last = null;
+		while (keys.hasNext()) {
+			K key = keys.next();
+			if (key == null) {
+				throw new NullPointerException();
+			}
+			if (!values.hasNext()) {
+				throw new IllegalArgumentException("No value for key " + key);
+			}
+			if (last != null && compare(comparator, last, key) >= 0) {
+				throw new IllegalArgumentException("Keys are not strictly increasing at " + key);
+			}
+			last = key;
+			sortedKeys.add(key);
+			sortedValues.add(values.next());
+		}
+		if (values.hasNext()) {
+			throw new IllegalArgumentException("More values than keys");
+		}
+		return new FrozenIndex<>(sortedKeys, sortedValues, comparator);
+	}
+
+	private static <K extends Comparable<K>> int compare(Comparator<? super K> comparator, K a, K b) {
+		if (comparator != null) {
+			return comparator.compare(a, b);
+		}
+		return a.compareTo(b);
+	}
+
+	/**
+	 * Fills slot k and its subtree with the next sorted entries, an
+	 * in order walk of the implicit tree, recursion depth is log n
+	 * @param i index of the next sorted entry
+	 * @param k slot to fill
+	 * @return index of the next sorted entry after the subtree
+	 */
+	private int layout(List<K> sortedKeys, List<V> sortedValues, int i, int k) {
+		if (k <= currentSize) {
+			i = layout(sortedKeys, sortedValues, i, 2*k);
+			keys[k] = sortedKeys.get(i);
+			values[k] = sortedValues.get(i);
+			i++;
+			i = layout(sortedKeys, sortedValues, i, 2*k+1);
+		}
+		return i;
+	}
+
+	/**
+	 * Walks down the implicit tree going right whenever the slot's
+	 * key is before the key, or also when equal if inclusive
+	 * @return the path taken, as the slot one level below the bottom
+	 */
+	private int descend(K key, boolean inclusive) {
+		int bound = inclusive ? 1 : 0;
+		int k = 1;
+		while (k <= currentSize) {
+			k = 2*k + (compare(comparator, keys[k], key) < bound ? 1 : 0);
+		}
+		return k;
+	}
+
+	/**
+	 * Each 1 bit of the path is a right turn and each 0 a left turn. The
+	 * last left turn was at the first key not before the search key,
+	 * found by dropping the trailing right turns and that left turn
+	 */
+	private static int lastLeft(int k) {
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/**
+	 * The last right turn was at the last key before the search key
+	 */
+	private static int lastRight(int k) {
+		return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+	}
+
+	/**
+	 * @return the slot holding the key or 0
+	 */
+	private int slot(K key) {
+		int k = lastLeft(descend(key, false));
+		return k != 0 && compare(comparator, keys[k], key) == 0 ? k : 0;
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return slot(key) != 0;
+	}
+
+	@Override
+	public V getValue(K key) {
+		return values[slot(key)];
+	}
+
+	@Override
+	public K getKey(V value) {
+		for (int k = first(); k != 0; k = successor(k)) {
+			if (Objects.equals(values[k], value)) {
+				return keys[k];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public V add(K key, V value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean delete(K key) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int size() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return currentSize == 0;
+	}
+
+	/**
+	 * @return the comparator ordering the keys, null for the natural order
+	 */
+	public Comparator<? super K> comparator() {
+		return comparator;
+	}
+
+	/**
+	 * @return the largest key less than or equal to the given key, or null
+	 */
+	public K floorKey(K key) {
+		return keys[lastRight(descend(key, true))];
+	}
+
+	/**
+	 * @return the largest key strictly less than the given key, or null
+	 */
+	public K lowerKey(K key) {
+		return keys[lastRight(descend(key, false))];
+	}
+
+	/**
+	 * @return the smallest key greater than or equal to the given key, or null
+	 */
+	public K ceilingKey(K key) {
+		return keys[lastLeft(descend(key, false))];
+	}
+
+	/**
+	 * @return the smallest key strictly greater than the given key, or null
+	 */
+	public K higherKey(K key) {
+		return keys[lastLeft(descend(key, true))];
+	}
+
+	/**
+	 * @return the smallest key or null if the index is empty
+	 */
+	public K firstKey() {
+		return keys[first()];
+	}
+
+	/**
+	 * @return the largest key or null if the index is empty
+	 */
+	public K lastKey() {
+		int k = 0;
+		while (2*k+1 <= currentSize) {
+			k = 2*k+1;
+		}
+		return keys[k];
+	}
+
+	/**
+	 * @return the slot of the smallest key, 0 if empty
+	 */
+	private int first() {
+		if (currentSize == 0) {
+			return 0;
+		}
+		int k = 1;
+		while (2*k <= currentSize) {
+			k = 2*k;
+		}
+		return k;
+	}
+
+	/**
+	 * @return the slot of the next key in order after slot k, 0 at the end
+	 */
+	private int successor(int k) {
+		if (2*k+1 <= currentSize) {
+			k = 2*k+1;
+			while (2*k <= currentSize) {
+				k = 2*k;
+			}
+			return k;
+		}
+		//Climb while coming up from a right child
+		return lastLeft(k);
+	}
+
+	/**
+	 * Iterates in order over the keys from from, inclusive, up to to,
+	 * exclusive
+	 * @param from lowest key to return, null to start at the first key
+	 * @param to key to stop before, null to run to the last key
+	 * @return an iterator over the keys in the range
+	 */
+	public Iterator<K> range(K from, K to) {
+		int start = from == null ? first() : lastLeft(descend(from, false));
+		return new FrozenIterator<K>(start, to) {
+			@Override
+			K read(int k) {
+				return keys[k];
+			}
+		};
+	}
+
+	@Override
+	public Iterator<K> keys() {
+		return range(null, null);
+	}
+
+	@Override
+	public Iterator<V> values() {
+		return new FrozenIterator<V>(first(), null) {
+			@Override
+			V read(int k) {
+				return values[k];
+			}
+		};
+	}
+
+	/**
+	 * Walks the slots in key order, nothing changes
+	 * under it so it can never fail
+	 */
+	abstract class FrozenIterator<T> implements Iterator<T> {
+
+		int next;
+		K to;
+
+		FrozenIterator(int start, K to) {
+			this.to = to;
+			next = start;
+			checkBound();
+		}
+
+		private void checkBound() {
+			if (next != 0 && to != null && compare(comparator, keys[next], to) >= 0) {
+				next = 0;
+			}
+		}
+
+		abstract T read(int k);
+
+		@Override
+		public boolean hasNext() {
+			return next != 0;
+		}
+
+		@Override
+		public T next() {
+			if (next == 0) {
+				throw new NoSuchElementException();
+			}
+			T temp = read(next);
+			next = successor(next);
+			checkBound();
+			return temp;
+		}
+	}
+}
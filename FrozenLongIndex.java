@@ -0,0 +1,187 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A version of the FrozenIndex keyed by primitive longs.
+ * <p>Keys sit in a flat long[] in Eytzinger order, so a lookup allocates
+ * and unboxes nothing and every step down is a long compare feeding a
+ * conditional move. int keys can be widened to long.
+ * </p>
+ *
+ * @param <V> value
+ */
+public final class FrozenLongIndex<V> {
+
+	private final long[] keys;
+	private final V[] values;
+	private final int currentSize;
+
+	/**
+	 * @param sortedKeys keys in strictly increasing order
+	 * @param sortedValues values in the same order as their keys
+	 */
+	@SuppressWarnings("unchecked")
+	private FrozenLongIndex(long[] sortedKeys, V[] sortedValues) {
+		currentSize = sortedKeys.length;
+		if (currentSize >= (1 << 30)) {
+			throw new IllegalArgumentException("Too many keys: " + currentSize);
+		}
+		keys = new long[currentSize + 1];
+		values = (V[]) new Object[currentSize + 1];
+		layout(sortedKeys, sortedValues, 0, 1);
+	}
+
+	/**
+	 * Freezes keys and values given as two arrays
+	 * @param sortedKeys keys in strictly increasing order
+	 * @param sortedValues the value of each key, in the same order
+	 * @return an index holding the entries
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 *         or the arrays differ in length
+	 */
+	public static <V> FrozenLongIndex<V> fromSorted(long[] sortedKeys, V[] sortedValues) {
+		if (sortedKeys.length != sortedValues.length) {
+			throw new IllegalArgumentException("Keys and values differ in length");
+		}
+		for (int i = 1; i < sortedKeys.length; i++) {
+			if (sortedKeys[i-1] >= sortedKeys[i]) {
+				throw new IllegalArgumentException("Keys are not strictly increasing at " + sortedKeys[i]);
+			}
+		}
+		return new FrozenLongIndex<>(sortedKeys, sortedValues);
+	}
+
+	/**
+	 * Freezes a map with Long keys whose keys and values
+	 * both iterate in key order, such as a BinarySearchTree
+	 * @param map the map to copy
+	 * @return an index holding the same entries
+	 * @throws IllegalArgumentException if the keys are not strictly increasing
+	 */
+	public static <V> FrozenLongIndex<V> of(MapADT<Long,V> map) {
+		long[] sortedKeys = new long[map.size()];
+		@SuppressWarnings("unchecked")
+		V[] sortedValues = (V[]) new Object[map.size()];
+		Iterator<Long> keyIt = map.keys();
+		Iterator<V> valueIt = map.values();
+		for (int i = 0; i < sortedKeys.length; i++) {
+			sortedKeys[i] = keyIt.next();
+			sortedValues[i] = valueIt.next();
+		}
+		return fromSorted(sortedKeys, sortedValues);
+	}
+
+	private int layout(long[] sortedKeys, V[] sortedValues, int i, int k) {
+		if (k <= currentSize) {
+			i = layout(sortedKeys, sortedValues, i, 2*k);
+			keys[k] = sortedKeys[i];
+			values[k] = sortedValues[i];
+			i++;
+			i = layout(sortedKeys, sortedValues, i, 2*k+1);
+		}
+		return i;
+	}
+
+	/**
+	 * @return the slot holding the first key not less than the key, or 0
+	 */
+	private int lowerBound(long key) {
+		int k = 1;
+		while (k <= currentSize) {
+			k = 2*k + (keys[k] < key ? 1 : 0);
+		}
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/**
+	 * @return the slot holding the key or 0
+	 */
+	private int slot(long key) {
+		int k = lowerBound(key);
+		return k != 0 && keys[k] == key ? k : 0;
+	}
+
+	public boolean contains(long key) {
+		return slot(key) != 0;
+	}
+
+	public V getValue(long key) {
+		return values[slot(key)];
+	}
+
+	public int size() {
+		return currentSize;
+	}
+
+	public boolean isEmpty() {
+		return currentSize == 0;
+	}
+
+	private int first() {
+		if (currentSize == 0) {
+			return 0;
+		}
+		int k = 1;
+		while (2*k <= currentSize) {
+			k = 2*k;
+		}
+		return k;
+	}
+
+	private int successor(int k) {
+		if (2*k+1 <= currentSize) {
+			k = 2*k+1;
+			while (2*k <= currentSize) {
+				k = 2*k;
+			}
+			return k;
+		}
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	public PrimitiveIterator.OfLong keys() {
+		return new LongIterator();
+	}
+
+	public Iterator<V> values() {
+		return new ValueIterator();
+	}
+
+	/**
+	 * Walks the slots in key order
+	 */
+	abstract class SlotIterator {
+
+		int next = first();
+
+		public boolean hasNext() {
+			return next != 0;
+		}
+
+		int nextSlot() {
+			if (next == 0) {
+				throw new NoSuchElementException();
+			}
+			int slot = next;
+			next = successor(next);
+			return slot;
+		}
+	}
+
+	class LongIterator extends SlotIterator implements PrimitiveIterator.OfLong {
+
+		@Override
+		public long nextLong() {
+			return keys[nextSlot()];
+		}
+	}
+
+	class ValueIterator extends SlotIterator implements Iterator<V> {
+
+		@Override
+		public V next() {
+			return values[nextSlot()];
+		}
+	}
+}
@@ -1,135 +1,348 @@
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.IntUnaryOperator;
 
 public class HashTable<K extends Comparable<K>, V> implements MapADT<K,V> {
 
-	private List<Entry<K,V>>[] buckets;
+	/**
+	 * Murmur3 finalizer, every input bit ends up
+	 * affecting the low bits the table mask keeps
+	 */
+	public static final IntUnaryOperator MURMUR = h -> {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	};
+	
+	/**
+	 * Fibonacci hashing, multiplies by 2^32 divided by the golden
+	 * ratio and folds the well mixed high bits down to the low ones
+	 */
+	public static final IntUnaryOperator FIBONACCI = h -> {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	};
+	
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	
+	private static final int REHASH_STEP = 4;
+	
+	private Entry<K,V>[] buckets;
+	private Entry<K,V>[] oldBuckets;
+	private int rehashIndex;
+	private boolean incremental;
+	private ReverseIndex<K,V> reverse;
 	private int currentSize;
+	private int modCount;
 	private int TABLE_SIZE;
+	private int minTableSize;
 	private double MIN = .25;
 	private double MAX = .9;
+	private final IntUnaryOperator spreader;
 	
 	/**
 	 * Default Constructor
 	 */
 	public HashTable() {
-		TABLE_SIZE = 123;
-		buckets = new List[TABLE_SIZE];
-		for(int i = 0; i < TABLE_SIZE; i++) {
-			buckets[i] = new LinkedList<>();
-		}
+		this(123);
 	}
 	
 	/**
-	 * Constructor that takes in a size
+	 * Constructor that takes in a size, the size
+	 * is rounded up to a power of two
 	 * @param size of the hashtable
 	 */
 	public HashTable(int size) {
-		TABLE_SIZE = size;
-		buckets = new List[TABLE_SIZE];
-		for(int i = 0; i < TABLE_SIZE; i++) {
-			buckets[i] = new LinkedList<>();
+		spreader = MURMUR;
+		TABLE_SIZE = tableSizeFor(size);
+		minTableSize = TABLE_SIZE;
+		buckets = newTable(TABLE_SIZE);
+	}
+	
+	/**
+	 * Constructor that sizes the table so expectedSize
+	 * entries can be added without ever resizing
+	 * @param expectedSize number of entries that will be added
+	 * @param loadFactor entries per bucket that triggers a resize
+	 */
+	public HashTable(int expectedSize, double loadFactor) {
+		this(expectedSize, loadFactor, MURMUR);
+	}
+	
+	/**
+	 * Constructor that sizes the table so expectedSize entries
+	 * can be added without ever resizing, and mixes hash codes
+	 * with the given function before masking them
+	 * @param expectedSize number of entries that will be added
+	 * @param loadFactor entries per bucket that triggers a resize
+	 * @param spreader bit mixing function, like MURMUR or FIBONACCI
+	 */
+	public HashTable(int expectedSize, double loadFactor, IntUnaryOperator spreader) {
+		if(expectedSize < 0) {
+			throw new IllegalArgumentException("Negative expected size: " + expectedSize);
+		}
+		if(!(loadFactor > 0)) {
+			throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+		}
+		if(spreader == null) {
+			throw new NullPointerException();
 		}
+		this.spreader = spreader;
+		MAX = loadFactor;
+		//Growing doubles so the load drops to MAX/2, shrinking at
+		//MAX/4 halves it back to MAX/2, so sizes never ping pong
+		MIN = loadFactor/4;
+		//+1 since add resizes once the load reaches MAX
+		TABLE_SIZE = tableSizeFor((long)Math.ceil(expectedSize / loadFactor) + 1);
+		minTableSize = TABLE_SIZE;
+		buckets = newTable(TABLE_SIZE);
 	}
 	
 	/**
-	 * Inner class to help stor entris
+	 * Rounds a requested size up to a power of two
+	 * so the bucket index is just a mask
+	 * @param size requested size
+	 * @return the table size to use
+	 */
+	private static int tableSizeFor(long size) {
+		int n = 1;
+		while(n < size && n < MAXIMUM_CAPACITY) {
+			n <<= 1;
+		}
+		return n;
+	}
+	
+	/**
+	 * Inner class to help stor entris, entries in the
+	 * same bucket are chained through next
 	 * @param <K> key
 	 * @param <V> value
 	 */
-	class Entry<K,V>{
+	static class Entry<K,V> implements Map.Entry<K,V>{
 		K k;
 		V v;
+		Entry<K,V> next;
 		
-		public Entry(K key, V value) {
+		public Entry(K key, V value, Entry<K,V> next) {
 			k = key;
 			v = value;
+			this.next = next;
+		}
+		
+		@Override
+		public K getKey() {
+			return k;
+		}
+		
+		@Override
+		public V getValue() {
+			return v;
+		}
+		
+		/**
+		 * Not supported, values are replaced with add
+		 * so the table can keep its index up to date
+		 */
+		@Override
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+			return Objects.equals(k, e.getKey()) && Objects.equals(v, e.getValue());
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(k) ^ Objects.hashCode(v);
+		}
+		
+		@Override
+		public String toString() {
+			return k + "=" + v;
 		}
 	}
 	
-	@Override
-	public boolean contains(K key) {
-		int getHash = (key.hashCode() & 0x7FFFFFFF) & TABLE_SIZE-1;
-		for(Entry e : buckets[getHash]) {
-			if(key.compareTo((K) e.k)==0) {
-				return true;
+	/**
+	 * Mixes the hash code of a key
+	 * @param key to hash
+	 * @return the spread hash
+	 */
+	private int hash(K key) {
+		return spreader.applyAsInt(key.hashCode());
+	}
+	
+	/**
+	 * Walks one bucket chain looking for a key
+	 * @param e head of the chain
+	 * @param key to look for
+	 * @return the entry holding the key or null
+	 */
+	private Entry<K,V> scan(Entry<K,V> e, K key) {
+		for(; e != null; e = e.next) {
+			if(e.k == key || key.compareTo(e.k)==0) {
+				return e;
 			}
 		}
-		return false;
+		return null;
+	}
+	
+	/**
+	 * Finds the entry of a key, while rehashing the key is
+	 * still in the old table if its bucket has not been moved
+	 * @param key to look for
+	 * @param h spread hash of the key
+	 * @return the entry holding the key or null
+	 */
+	private Entry<K,V> findEntry(K key, int h) {
+		if(oldBuckets != null) {
+			int i = h & (oldBuckets.length-1);
+			if(i >= rehashIndex) {
+				Entry<K,V> e = scan(oldBuckets[i], key);
+				if(e != null) {
+					return e;
+				}
+			}
+		}
+		return scan(buckets[h & (TABLE_SIZE-1)], key);
+	}
+	
+	@Override
+	public boolean contains(K key) {
+		rehashStep();
+		return findEntry(key, hash(key)) != null;
 	}
 
 	@Override
 	public Object add(K key, V value) {
-		int getHash = (key.hashCode() & 0x7FFFFFFF) & TABLE_SIZE-1;
-		if(contains(key)) {
-			Entry e = null;
-			for(int i = 0; i < buckets[getHash].size();i++) {
-				Comparable temp = (Comparable) buckets[getHash].get(i).k;
-				if(temp.compareTo(key)==0) {
-					e = buckets[getHash].get(i);
-				}
-			}
-			Object temp = e.v;
+		rehashStep();
+		int h = hash(key);
+		Entry<K,V> e = findEntry(key, h);
+		if(e != null) {
+			V temp = e.v;
 			e.v = value;
-			
+			if(reverse != null && !Objects.equals(temp, value)) {
+				reverse.remove(temp, e.k);
+				reverse.put(value, e.k);
+			}
 			return temp;
 		}
-		else {
-			buckets[getHash].add(new Entry(key,value)); 
-			currentSize++;
+		int getHash = h & (TABLE_SIZE-1);
+		buckets[getHash] = new Entry<>(key, value, buckets[getHash]);
+		currentSize++;
+		modCount++;
+		if(reverse != null) {
+			reverse.put(value, key);
+		}
 		
-		if(((double)currentSize/TABLE_SIZE)>=MAX) {
-			arrayCopier(4);
+		if(((double)currentSize/TABLE_SIZE)>=MAX && TABLE_SIZE < MAXIMUM_CAPACITY) {
+			arrayCopier(TABLE_SIZE*2);
 		}
-			return null;
+		return null;
+	}
+	
+	/**
+	 * Unlinks a key from one bucket chain
+	 * @param table the table holding the chain
+	 * @param getHash index of the chain
+	 * @param key to remove
+	 * @return the removed entry or null if the key was not in the chain
+	 */
+	private Entry<K,V> unlink(Entry<K,V>[] table, int getHash, K key) {
+		Entry<K,V> prev = null;
+		for(Entry<K,V> e = table[getHash]; e != null; prev = e, e = e.next) {
+			if(e.k == key || key.compareTo(e.k)==0) {
+				if(prev == null) {
+					table[getHash] = e.next;
+				} else {
+					prev.next = e.next;
+				}
+				return e;
+			}
 		}
+		return null;
 	}
 
 	@Override
 	public boolean delete(K key) {
-		int getHash = (key.hashCode() & 0x7FFFFFFF) & TABLE_SIZE-1;
-		if(!contains(key)) {
+		rehashStep();
+		if(removeEntry(key) == null) {
 			return false;
 		}
-		Entry e = null;
-		for(int i = 0; i < buckets[getHash].size();i++) {
-			Comparable temp = (Comparable) buckets[getHash].get(i).k;
-			if(temp.compareTo(key)==0) {
-				e = buckets[getHash].get(i);
+		
+		//Wait for a running resize to finish before starting another
+		if(((double)currentSize/TABLE_SIZE)<MIN && TABLE_SIZE > minTableSize && oldBuckets == null) {
+			arrayCopier(TABLE_SIZE/2);
+		}
+		return true;
+	}
+	
+	/**
+	 * Unlinks a key from whichever table holds it, without
+	 * ever shrinking so iterators can remove safely
+	 * @param key to remove
+	 * @return the removed entry or null
+	 */
+	private Entry<K,V> removeEntry(K key) {
+		int h = hash(key);
+		Entry<K,V> removed = null;
+		if(oldBuckets != null) {
+			int i = h & (oldBuckets.length-1);
+			if(i >= rehashIndex) {
+				removed = unlink(oldBuckets, i, key);
+			}
+		}
+		if(removed == null) {
+			removed = unlink(buckets, h & (TABLE_SIZE-1), key);
+			if(removed == null) {
+				return null;
 			}
 		}
-		buckets[getHash].remove(e); //I dont know if this will work
 		currentSize--;
-		
-		//BREAKS SO DONT UNDO
-		//if(((double)currentSize/TABLE_SIZE)<=MAX) {
-		//	arrayCopier(.5);
-		//}
-		return true;
+		modCount++;
+		if(reverse != null) {
+			reverse.remove(removed.v, removed.k);
+		}
+		return removed;
 	}
 
 	@Override
 	public V getValue(K key) {
-		int getHash = (key.hashCode() & 0x7FFFFFFF) & TABLE_SIZE-1;
-		if(!contains(key)) { //new
-			return null;
-		}
-		for(Entry e : buckets[getHash]) {
-			if(key.compareTo((K) e.k)==0) {
-				return (V) e.v;
-			}
-		}
-		return null;
+		rehashStep();
+		Entry<K,V> e = findEntry(key, hash(key));
+		return e == null ? null : e.v;
 	}
 
 	@Override
 	public K getKey(V value) {
+		if(reverse != null) {
+			return reverse.get(value);
+		}
+		if(oldBuckets != null) {
+			for(int i = rehashIndex; i < oldBuckets.length; i++) {
+				for(Entry<K,V> e = oldBuckets[i]; e != null; e = e.next) {
+					if(Objects.equals(e.v, value)) {
+						return e.k;
+					}
+				}
+			}
+		}
 		for(int i = 0; i < buckets.length; i++) {
-			for(Entry e : buckets[i]) {
-				if(e.v.equals(value)) {
-					return (K)e.k;
+			for(Entry<K,V> e = buckets[i]; e != null; e = e.next) {
+				if(Objects.equals(e.v, value)) {
+					return e.k;
 				}
 			}
 		}
@@ -149,103 +362,317 @@ public class HashTable<K extends Comparable<K>, V> implements MapADT<K,V> {
 
 	@Override
 	public void clear() {
-		for(int i = 0; i < buckets.length; i++) {
-			buckets[i].clear();
-		}
+		Arrays.fill(buckets, null);
+		oldBuckets = null;
+		rehashIndex = 0;
 		currentSize = 0;
+		modCount++;
+		if(reverse != null) {
+			reverse.clear();
+		}
 	}
 
 	@Override
-	public Iterator keys(){
+	public Iterator<K> keys(){
 		return new HashIteratorKeys();
 	}
 
 	@Override
-	public Iterator values() {
+	public Iterator<V> values() {
 		return new HashIteratorValues();
 	}
 	
 	/**
-	 * Makes the hashtable larger since the
-	 * hashtable can get really large in size. Right
-	 * now shrinking does not work
-	 * @param percentage to grow or shrink the hashtable
+	 * Iterates over the entries in place, saving
+	 * the getValue per key a keys walk would need
+	 * @return an iterator over the key value pairs
+	 */
+	public Iterator<Map.Entry<K,V>> entries() {
+		return new HashIteratorEntries();
+	}
+	
+	/**
+	 * Hands every key and value to the action without
+	 * creating an iterator. Like the iterators it finishes a
+	 * running resize first, since lookups made by the action
+	 * would otherwise move chains while they are being walked
+	 * @param action to perform on each pair
+	 * @throws ConcurrentModificationException if the action changes the table
+	 */
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		finishRehash();
+		int expectedModCount = modCount;
+		Entry<K,V>[] table = buckets;
+		for(int i = 0; i < table.length; i++) {
+			for(Entry<K,V> e = table[i]; e != null; e = e.next) {
+				action.accept(e.k, e.v);
+				if(modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param size length of the bucket array
+	 * @return an empty bucket array
 	 */
-	private void arrayCopier(double percentage) {
-		int newSize = (int)(TABLE_SIZE*percentage);
+	@SuppressWarnings("unchecked")
+	private static <K,V> Entry<K,V>[] newTable(int size) {
+		return (Entry<K,V>[]) new Entry<?,?>[size];
+	}
+	
+	/**
+	 * Turns the value to key index on or off. While it is on
+	 * getKey is a hash lookup instead of a scan of every bucket, and
+	 * when several keys hold equal values it returns the one that has
+	 * held its value the longest. While it is off nothing is kept
+	 * @param bidirectional true to keep the index
+	 */
+	public void setBidirectional(boolean bidirectional) {
+		if(!bidirectional) {
+			reverse = null;
+		} else if(reverse == null) {
+			finishRehash();
+			reverse = new ReverseIndex<>(K::compareTo);
+			for(int i = 0; i < buckets.length; i++) {
+				for(Entry<K,V> e = buckets[i]; e != null; e = e.next) {
+					reverse.put(e.v, e.k);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return true if getKey uses the value to key index
+	 */
+	public boolean isBidirectional() {
+		return reverse != null;
+	}
+	
+	/**
+	 * Turns incremental rehashing on or off. When it is on a
+	 * resize only allocates the new buckets, and the entries are
+	 * moved a few buckets at a time by the following add, getValue,
+	 * contains and delete calls so no single call pays for the whole
+	 * table. Turning it off finishes any resize still in progress
+	 * @param incremental true to spread resizes over later calls
+	 */
+	public void setIncrementalRehash(boolean incremental) {
+		this.incremental = incremental;
+		if(!incremental) {
+			finishRehash();
+		}
+	}
+	
+	/**
+	 * @return true if resizes are spread over later calls
+	 */
+	public boolean isIncrementalRehash() {
+		return incremental;
+	}
+	
+	/**
+	 * @return true if a resize is still moving entries
+	 */
+	public boolean isRehashing() {
+		return oldBuckets != null;
+	}
+	
+	/**
+	 * Moves up to REHASH_STEP buckets from the old table into the
+	 * new one, looking at no more than ten empty buckets per moved
+	 * bucket so a sparse old table does not stall a single call
+	 */
+	private void rehashStep() {
+		if(oldBuckets == null) {
+			return;
+		}
+		int moved = 0;
+		int emptyVisits = REHASH_STEP*10;
+		while(moved < REHASH_STEP && rehashIndex < oldBuckets.length) {
+			if(oldBuckets[rehashIndex] == null) {
+				rehashIndex++;
+				if(--emptyVisits == 0) {
+					break;
+				}
+			} else {
+				moveBucket(oldBuckets, rehashIndex++);
+				moved++;
+			}
+		}
+		if(rehashIndex == oldBuckets.length) {
+			oldBuckets = null;
+			rehashIndex = 0;
+		}
+	}
+	
+	/**
+	 * Moves every bucket the incremental resize has not reached yet
+	 */
+	private void finishRehash() {
+		if(oldBuckets == null) {
+			return;
+		}
+		for(int i = rehashIndex; i < oldBuckets.length; i++) {
+			moveBucket(oldBuckets, i);
+		}
+		oldBuckets = null;
+		rehashIndex = 0;
+	}
+	
+	/**
+	 * Relinks every entry of an old bucket into
+	 * the current buckets without copying them
+	 * @param oldStorage the table being emptied
+	 * @param i index of the bucket to move
+	 */
+	private void moveBucket(Entry<K,V>[] oldStorage, int i) {
+		Entry<K,V> e = oldStorage[i];
+		oldStorage[i] = null;
+		while(e != null) {
+			Entry<K,V> next = e.next;
+			int getHash = hash(e.k) & (TABLE_SIZE-1);
+			e.next = buckets[getHash];
+			buckets[getHash] = e;
+			e = next;
+		}
+	}
+	
+	/**
+	 * Shrinks the table to the smallest power of two that holds
+	 * the current entries under the load factor, ignoring the size
+	 * the table was built with. Useful after a mass delete since
+	 * keys, values and getKey walk every bucket
+	 */
+	public void trimToSize() {
+		finishRehash();
+		int newSize = tableSizeFor((long)Math.floor(currentSize / MAX) + 1);
+		if(newSize < TABLE_SIZE) {
+			minTableSize = Math.min(minTableSize, newSize);
+			arrayCopier(newSize);
+			finishRehash();
+		}
+	}
+	
+	/**
+	 * Makes the hashtable larger or smaller so the
+	 * buckets follow the number of entries. The existing entries
+	 * are relinked into the new buckets, not copied, and in
+	 * incremental mode they are only moved later by rehashStep
+	 * @param newSize power of two size of the new table
+	 */
+	private void arrayCopier(int newSize) {
+		//Only one resize runs at a time
+		finishRehash();
+		modCount++;
+		
 		TABLE_SIZE = newSize;
 		
-		List<Entry<K,V>>[] oldStorage = buckets;
+		Entry<K,V>[] oldStorage = buckets;
 		
-		buckets = new List[TABLE_SIZE];
-		for(int i = 0; i < TABLE_SIZE; i++) {
-			buckets[i] = new LinkedList<>();
+		buckets = newTable(TABLE_SIZE);
+		
+		if(incremental) {
+			oldBuckets = oldStorage;
+			rehashIndex = 0;
+			return;
 		}
 		
-		//Does not work for delete
 		for(int i = 0; i < oldStorage.length; i++) {
-			for(Entry e : oldStorage[i]) {
-				int getHash = (e.k.hashCode() & 0x7FFFFFFF) & TABLE_SIZE-1;
-				buckets[getHash].add(new Entry(e.k,e.v));
-			}
+			moveBucket(oldStorage, i);
 		}
 	
     }
 	
-	class HashIteratorKeys implements Iterator<K>{
+	/**
+	 * Walks the bucket array in place one chain at a time.
+	 * Creating one finishes any running resize so the layout
+	 * only changes again through add or delete, which it detects
+	 */
+	abstract class HashIterator<T> implements Iterator<T>{
 
-		List<K> keys;
-		List<Entry<K,V>>[] instance;
-		
-		public HashIteratorKeys() {
-			keys = new ArrayList<K>();
-			instance = buckets; 
-			
-			for(int i = 0; i < instance.length; i++) {
-				for(Entry e : instance[i]) {
-					keys.add((K) e.k);
-				}
+		Entry<K,V>[] instance;
+		Entry<K,V> next;
+		Entry<K,V> lastReturned;
+		int index;
+		int expectedModCount;
+		
+		public HashIterator() {
+			finishRehash();
+			instance = buckets;
+			expectedModCount = modCount;
+			advance();
+		}
+		
+		/**
+		 * Moves next to the head of the next non empty bucket
+		 */
+		private void advance() {
+			while(next == null && index < instance.length) {
+				next = instance[index++];
+			}
+		}
+		
+		/**
+		 * @return the next entry in the table
+		 */
+		Entry<K,V> nextEntry() {
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(next == null) {
+				throw new NoSuchElementException();
 			}
+			lastReturned = next;
+			next = next.next;
+			advance();
+			return lastReturned;
 		}
 		
 		@Override
 		public boolean hasNext() {
-			return !keys.isEmpty(); 
+			return next != null;
 		}
 		
 		@Override
-		public K next() {
-			return keys.remove(0);
+		public void remove() {
+			if(lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			removeEntry(lastReturned.k);
+			lastReturned = null;
+			expectedModCount = modCount;
 		}
-		
 	}
 	
-	class HashIteratorValues implements Iterator<V>{
-
-		List<V> values;
-		List<Entry<K,V>>[] instance;
-		
-		public HashIteratorValues() {
-			values = new ArrayList<V>();
-			instance = buckets; 
-			
-			for(int i = 0; i < instance.length; i++) {
-				for(Entry e : instance[i]) {
-					values.add((V) e.v);
-				}
-			}
-		}
+	class HashIteratorKeys extends HashIterator<K>{
 		
 		@Override
-		public boolean hasNext() {
-			return !values.isEmpty(); 
+		public K next() {
+			return nextEntry().k;
 		}
 		
+	}
+	
+	class HashIteratorValues extends HashIterator<V>{
+		
 		@Override
 		public V next() {
-			return values.remove(0);
+			return nextEntry().v;
 		}
 		
+	}
+	
+	class HashIteratorEntries extends HashIterator<Map.Entry<K,V>>{
+		
+		@Override
+		public Map.Entry<K,V> next() {
+			return nextEntry();
+		}
 		
 	}
 	
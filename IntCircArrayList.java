@@ -0,0 +1,426 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A version of the CircArrayList holding primitive ints.
+ * <p>Values sit in a flat int[] ring with a power of two length, so nothing
+ * is boxed, a million values take 4 MB, and adding or removing at either end
+ * is O(1) and allocates nothing until the ring has to grow. It is meant for
+ * sliding windows of samples: the sum is kept as values enter and leave, so
+ * sum and mean are O(1). The min and max come from two monotonic queues of
+ * positions, each holding only the values that can still become the min or
+ * max once the values before them leave. min and max are O(1), and keeping
+ * the queues costs amortized O(1) per value added at either end or removed
+ * from the front. Removing from the back is O(1) too: when the removed value
+ * was hiding others, it and a set both leave the queues to be rebuilt on the
+ * next min or max.
+ * </p>
+ */
+public final class IntCircArrayList {
+
+    private static final int DEFAULT_SIZE = 16;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private int[] storage;
+
+    private int curSize;
+
+    private int frontCursor;
+
+    private int modCount;
+
+    private long sum;
+
+    private int frontPosition;
+
+    private final PositionDeque minQueue = new PositionDeque();
+
+    private final PositionDeque maxQueue = new PositionDeque();
+
+    private boolean extremesValid = true;
+
+    /**
+     * Builds a new, empty list.
+     */
+    public IntCircArrayList() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Builds a new, empty list with room for the given
+     * number of values before it has to grow
+     *
+     * @param expectedSize values to make room for
+     */
+    public IntCircArrayList(int expectedSize) {
+        if(expectedSize<0)
+            throw new IllegalArgumentException("Negative size: " + expectedSize);
+        int capacity = DEFAULT_SIZE;
+        while(capacity < expectedSize && capacity < MAXIMUM_CAPACITY){
+            capacity <<= 1;
+        }
+        storage = new int[capacity];
+    }
+
+    /**
+     * @param index index (0 based) of the value to return.
+     * @return value at the specified position in the list.
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0
+     *                                   || index >= size())
+     */
+    public int getInt(int index) {
+        if(index<0 || index>=curSize)
+            throw new IndexOutOfBoundsException();
+        return storage[toCircleIndex(index)];
+    }
+
+    /**
+     * Replaces the value at the specified position in this list.
+     *
+     * @param index index of the value to replace
+     * @param value value to be stored at the specified position
+     * @return value previously at the specified position
+     * @throws IndexOutOfBoundsException if index is out of the range (index < 0
+     *                                   || index >= size())
+     */
+    public int setInt(int index, int value) {
+        if(index<0 || index>=curSize)
+            throw new IndexOutOfBoundsException();
+        int i = toCircleIndex(index);
+        int temp = storage[i];
+        storage[i] = value;
+        leave(temp);
+        enter(value);
+        extremesValid = false;
+        return temp;
+    }
+
+    public int size() {
+        return curSize;
+    }
+
+    public boolean isEmpty() {
+        return curSize==0;
+    }
+
+    /**
+     * Adds to the front of the ring in O(1)
+     *
+     * @param value value to be inserted
+     */
+    public void addFirst(int value){
+        if(curSize==storage.length)
+            arrayCopier(storage.length*2);
+        frontCursor = toCircleIndex(-1);
+        frontPosition--;
+        storage[frontCursor] = value;
+        curSize++;
+        modCount++;
+        enter(value);
+        pushFront(frontPosition, value);
+    }
+
+    /**
+     * Adds to the back of the ring in O(1)
+     *
+     * @param value value to be inserted
+     */
+    public void addLast(int value){
+        if(curSize==storage.length)
+            arrayCopier(storage.length*2);
+        storage[toCircleIndex(curSize)] = value;
+        curSize++;
+        modCount++;
+        enter(value);
+        pushBack(frontPosition+curSize-1, value);
+    }
+
+    /**
+     * Removes the first value of the ring by moving the front cursor
+     *
+     * @return the value removed
+     * @throws NoSuchElementException if the list is empty
+     */
+    public int removeFirst(){
+        if(curSize==0)
+            throw new NoSuchElementException();
+        int temp = storage[frontCursor];
+        frontCursor = toCircleIndex(1);
+        frontPosition++;
+        curSize--;
+        modCount++;
+        leave(temp);
+        popFront(frontPosition-1);
+        shrinkIfSparse();
+        return temp;
+    }
+
+    /**
+     * Removes the last value of the ring
+     *
+     * @return the value removed
+     * @throws NoSuchElementException if the list is empty
+     */
+    public int removeLast(){
+        if(curSize==0)
+            throw new NoSuchElementException();
+        int temp = storage[toCircleIndex(curSize-1)];
+        curSize--;
+        modCount++;
+        leave(temp);
+        popBack();
+        shrinkIfSparse();
+        return temp;
+    }
+
+    /**
+     * @throws NoSuchElementException if the list is empty
+     */
+    public int getFirst() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return storage[frontCursor];
+    }
+
+    /**
+     * @throws NoSuchElementException if the list is empty
+     */
+    public int getLast() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return storage[toCircleIndex(curSize-1)];
+    }
+
+    public void clear() {
+        frontCursor = 0;
+        curSize = 0;
+        modCount++;
+        sum = 0;
+        frontPosition = 0;
+        minQueue.clear();
+        maxQueue.clear();
+        extremesValid = true;
+    }
+
+    /**
+     * Copies the values into an array in order, in at most two
+     * arraycopies. A new array is made if the given one is too short
+     *
+     * @param a array to fill
+     * @return the filled array
+     */
+    public int[] toArray(int[] a) {
+        if(a.length < curSize)
+            a = new int[curSize];
+        int first = Math.min(curSize, storage.length-frontCursor);
+        System.arraycopy(storage, frontCursor, a, 0, first);
+        System.arraycopy(storage, 0, a, first, curSize-first);
+        return a;
+    }
+
+    public int[] toArray() {
+        return toArray(new int[curSize]);
+    }
+
+    /**
+     * @return the sum of the values in O(1), kept as a long
+     *         so a window of ints can not overflow it
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @return the mean of the values in O(1)
+     * @throws NoSuchElementException if the list is empty
+     */
+    public double mean() {
+        if(curSize==0)
+            throw new NoSuchElementException();
+        return (double) sum / curSize;
+    }
+
+    /**
+     * @return the smallest value, O(1) unless the queues have to be rebuilt
+     * @throws NoSuchElementException if the list is empty
+     */
+    public int min() {
+        checkExtremes();
+        return valueAt(minQueue.peekFirst());
+    }
+
+    /**
+     * @return the largest value, O(1) unless the queues have to be rebuilt
+     * @throws NoSuchElementException if the list is empty
+     */
+    public int max() {
+        checkExtremes();
+        return valueAt(maxQueue.peekFirst());
+    }
+
+    /**
+     * Updates the sum for a value joining the list
+     */
+    private void enter(int value){
+        sum += value;
+    }
+
+    /**
+     * Updates the sum for a value leaving the list
+     */
+    private void leave(int value){
+        sum -= value;
+    }
+
+    /**
+     * @return the value at a position counted the way frontPosition is
+     */
+    private int valueAt(int position){
+        return storage[toCircleIndex(position - frontPosition)];
+    }
+
+    /**
+     * Queues a value that joined at the back. The values before it that
+     * it beats can never be the min or max again, so they are dropped
+     */
+    private void pushBack(int position, int value){
+        if(!extremesValid)
+            return;
+        queueMin(position, value);
+        queueMax(position, value);
+    }
+
+    private void queueMin(int position, int value){
+        while(!minQueue.isEmpty() && valueAt(minQueue.peekLast()) >= value)
+            minQueue.removeLast();
+        minQueue.addLast(position);
+    }
+
+    private void queueMax(int position, int value){
+        while(!maxQueue.isEmpty() && valueAt(maxQueue.peekLast()) <= value)
+            maxQueue.removeLast();
+        maxQueue.addLast(position);
+    }
+
+    /**
+     * Queues a value that joined at the front, it only matters
+     * once everything after it is gone if it is a new min or max
+     */
+    private void pushFront(int position, int value){
+        if(!extremesValid)
+            return;
+        if(minQueue.isEmpty() || value < valueAt(minQueue.peekFirst()))
+            minQueue.addFirst(position);
+        if(maxQueue.isEmpty() || value > valueAt(maxQueue.peekFirst()))
+            maxQueue.addFirst(position);
+    }
+
+    /**
+     * Drops a value that left from the front, which is
+     * the head of a queue if it was still a candidate
+     */
+    private void popFront(int position){
+        if(!extremesValid)
+            return;
+        if(minQueue.peekFirst()==position)
+            minQueue.removeFirst();
+        if(maxQueue.peekFirst()==position)
+            maxQueue.removeFirst();
+    }
+
+    /**
+     * Drops the value that left from the back, always the tail of both
+     * queues. The queues are still right only if the new last value is
+     * the new tail of both, otherwise the removed value had dropped values
+     * it beat and the queues are rebuilt on the next min or max instead of
+     * rescanning them now
+     */
+    private void popBack(){
+        if(!extremesValid)
+            return;
+        int last = frontPosition + curSize - 1;
+        minQueue.removeLast();
+        maxQueue.removeLast();
+        if(curSize > 0 && (minQueue.isEmpty() || minQueue.peekLast() != last
+                || maxQueue.isEmpty() || maxQueue.peekLast() != last))
+            extremesValid = false;
+    }
+
+    /**
+     * Rebuilds the queues from the whole list after a set or a
+     * removeLast that left them stale
+     */
+    private void checkExtremes(){
+        if(curSize==0)
+            throw new NoSuchElementException();
+        if(extremesValid)
+            return;
+        minQueue.clear();
+        maxQueue.clear();
+        extremesValid = true;
+        for(int i = 0; i < curSize; i++)
+            pushBack(frontPosition+i, storage[toCircleIndex(i)]);
+    }
+
+    /**
+     * @return an iterator over the values front to back
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            int next = 0;
+            int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < curSize;
+            }
+
+            @Override
+            public int nextInt() {
+                if(modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if(next >= curSize)
+                    throw new NoSuchElementException();
+                return storage[toCircleIndex(next++)];
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Turns the desired index into an index that is useful
+     * for the circle array, the length is a power of two
+     */
+    private int toCircleIndex(int arrIndex){
+        return (frontCursor + arrIndex) & (storage.length-1);
+    }
+
+    /**
+     * Halves the array once it is a quarter full
+     */
+    private void shrinkIfSparse(){
+        if(storage.length > DEFAULT_SIZE && curSize <= storage.length/4)
+            arrayCopier(storage.length/2);
+    }
+
+    /**
+     * Gives the ring a larger or smaller array, copying the values
+     * over in at most two pieces and resetting the front cursor to 0
+     *
+     * @param newSize length of the new array
+     */
+    private void arrayCopier(int newSize) {
+        if(newSize > MAXIMUM_CAPACITY)
+            throw new IllegalStateException("List is too large");
+        storage = toArray(new int[newSize]);
+        frontCursor = 0;
+    }
+
+}
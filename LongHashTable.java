@@ -0,0 +1,337 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+
+/**
+ * A version of the OpenHashTable keyed by primitive longs.
+ * <p>Keys sit in a flat long[] next to the values, so nothing is boxed and
+ * a lookup allocates nothing. A slot holding 0 is empty, the key 0 itself
+ * is kept off to the side in its own field. The home slot comes from
+ * Fibonacci hashing, the key times 2^64 divided by the golden ratio with
+ * the top bits kept, which spreads sequential ids evenly.
+ * </p>
+ *
+ * @param <V> value
+ */
+public class LongHashTable<V> {
+
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+	private static final int DEFAULT_SIZE = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private long[] keys;
+	private V[] values;
+	private int currentSize;
+	private int modCount;
+	private int mask;
+	private int shift;
+	private boolean hasZeroKey;
+	private V zeroValue;
+	private double MAX = .75;
+
+	/**
+	 * Default Constructor
+	 */
+	public LongHashTable() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Constructor that takes in a size, the size
+	 * is rounded up to the next power of two
+	 * @param size of the hashtable
+	 */
+	public LongHashTable(int size) {
+		int capacity = 2;
+		while(capacity < size && capacity < MAXIMUM_CAPACITY) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Creates empty key and value arrays
+	 * @param capacity power of two size of the arrays
+	 */
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = (V[]) new Object[capacity];
+		mask = capacity-1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * @param key to hash
+	 * @return the home slot of the key
+	 */
+	private int home(long key) {
+		return (int)((key * GOLDEN) >>> shift);
+	}
+
+	/**
+	 * Finds the slot holding a key or the empty slot
+	 * that ends its probe run
+	 * @param key to look for, never 0
+	 * @return the slot of the key or the free slot it belongs in
+	 */
+	private int findSlot(long key) {
+		int i = home(key);
+		long k;
+		while((k = keys[i]) != 0) {
+			if(k == key) {
+				return i;
+			}
+			i = (i+1) & mask;
+		}
+		return i;
+	}
+
+	public boolean contains(long key) {
+		if(key == 0) {
+			return hasZeroKey;
+		}
+		return keys[findSlot(key)] != 0;
+	}
+
+	/**
+	 * Adds a key and value, replacing the value if the key is there
+	 * @param key the key
+	 * @param value the value
+	 * @return the replaced value or null
+	 */
+	public V add(long key, V value) {
+		if(key == 0) {
+			V temp = zeroValue;
+			zeroValue = value;
+			if(!hasZeroKey) {
+				hasZeroKey = true;
+				currentSize++;
+				modCount++;
+			}
+			return temp;
+		}
+		int i = findSlot(key);
+		if(keys[i] != 0) {
+			V temp = values[i];
+			values[i] = value;
+			return temp;
+		}
+		//At the largest capacity one slot has to stay empty to end every probe run
+		if(keys.length == MAXIMUM_CAPACITY && currentSize >= keys.length-1) {
+			throw new IllegalStateException("Table is full");
+		}
+		keys[i] = key;
+		values[i] = value;
+		currentSize++;
+		modCount++;
+
+		if(((double)currentSize/keys.length)>=MAX && keys.length < MAXIMUM_CAPACITY) {
+			arrayCopier(keys.length << 1);
+		}
+		return null;
+	}
+
+	public boolean delete(long key) {
+		if(key == 0) {
+			if(!hasZeroKey) {
+				return false;
+			}
+			hasZeroKey = false;
+			zeroValue = null;
+			currentSize--;
+			modCount++;
+			return true;
+		}
+		int i = findSlot(key);
+		if(keys[i] == 0) {
+			return false;
+		}
+		removeSlot(i);
+		return true;
+	}
+
+	/**
+	 * Empties a slot and shifts the rest of its probe run
+	 * back so later lookups never stop at the new hole
+	 * @param hole the slot to empty
+	 */
+	private void removeSlot(int hole) {
+		int i = hole;
+		while(true) {
+			i = (i+1) & mask;
+			long k = keys[i];
+			if(k == 0) {
+				break;
+			}
+			int h = home(k);
+			if(((i - h) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = k;
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = 0;
+		values[hole] = null;
+		currentSize--;
+		modCount++;
+	}
+
+	/**
+	 * @param key to look up
+	 * @return the value of the key or null
+	 */
+	public V getValue(long key) {
+		if(key == 0) {
+			return zeroValue;
+		}
+		int i = home(key);
+		long k;
+		while((k = keys[i]) != 0) {
+			if(k == key) {
+				return values[i];
+			}
+			i = (i+1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Scans for a key holding a value
+	 * @param value to look for
+	 * @param defaultKey returned when no key holds the value
+	 * @return a key holding the value or defaultKey
+	 */
+	public long getKey(V value, long defaultKey) {
+		if(hasZeroKey && Objects.equals(zeroValue, value)) {
+			return 0;
+		}
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != 0 && Objects.equals(values[i], value)) {
+				return keys[i];
+			}
+		}
+		return defaultKey;
+	}
+
+	public int size() {
+		return currentSize;
+	}
+
+	public boolean isEmpty() {
+		return currentSize==0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, null);
+		hasZeroKey = false;
+		zeroValue = null;
+		currentSize = 0;
+		modCount++;
+	}
+
+	/**
+	 * @return the keys, handed out with nextLong so they are never boxed
+	 */
+	public PrimitiveIterator.OfLong keys() {
+		return new LongIterator();
+	}
+
+	public Iterator<V> values() {
+		return new ValueIterator();
+	}
+
+	/**
+	 * Grows the arrays and puts every key back
+	 * into its new home slot
+	 * @param newSize power of two size of the new arrays
+	 */
+	private void arrayCopier(int newSize) {
+		long[] oldKeys = keys;
+		V[] oldValues = values;
+		allocate(newSize);
+		modCount++;
+
+		for(int i = 0; i < oldKeys.length; i++) {
+			long k = oldKeys[i];
+			if(k != 0) {
+				int j = home(k);
+				while(keys[j] != 0) {
+					j = (j+1) & mask;
+				}
+				keys[j] = k;
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Walks the slot array in place, the zero
+	 * key comes first when it is present
+	 */
+	abstract class SlotIterator {
+
+		long[] instance = keys;
+		boolean zeroPending = hasZeroKey;
+		int expectedModCount = modCount;
+		int next = advance(0);
+
+		int advance(int from) {
+			while(from < instance.length && instance[from] == 0) {
+				from++;
+			}
+			return from;
+		}
+
+		public boolean hasNext() {
+			return zeroPending || next < instance.length;
+		}
+
+		/**
+		 * @return the slot of the next entry, -1 for the zero key
+		 */
+		int nextSlot() {
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(zeroPending) {
+				zeroPending = false;
+				return -1;
+			}
+			if(next >= instance.length) {
+				throw new NoSuchElementException();
+			}
+			int slot = next;
+			next = advance(next+1);
+			return slot;
+		}
+	}
+
+	class LongIterator extends SlotIterator implements PrimitiveIterator.OfLong {
+
+		@Override
+		public long nextLong() {
+			int slot = nextSlot();
+			return slot < 0 ? 0 : instance[slot];
+		}
+	}
+
+	class ValueIterator extends SlotIterator implements Iterator<V> {
+
+		V[] instanceValues = values;
+
+		@Override
+		public V next() {
+			int slot = nextSlot();
+			return slot < 0 ? zeroValue : instanceValues[slot];
+		}
+	}
+
+	public int getTableSize() {
+		return keys.length;
+	}
+}
@@ -0,0 +1,349 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A version of the OpenHashTable mapping primitive longs to primitive longs.
+ * <p>Keys and values sit in two flat long[] arrays, so nothing is boxed and
+ * a lookup allocates nothing. Since a long can not be null, missing keys
+ * are reported with the no entry value given to the constructor. A slot
+ * holding 0 is empty, the key 0 itself is kept off to the side in its own
+ * field. The home slot comes from Fibonacci hashing, the key times 2^64
+ * divided by the golden ratio with the top bits kept, which spreads
+ * sequential ids evenly.
+ * </p>
+ */
+public class LongLongHashTable {
+
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+	private static final int DEFAULT_SIZE = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private long[] keys;
+	private long[] values;
+	private int currentSize;
+	private int modCount;
+	private int mask;
+	private int shift;
+	private boolean hasZeroKey;
+	private long zeroValue;
+	private final long noEntryValue;
+	private double MAX = .75;
+
+	/**
+	 * Default Constructor
+	 */
+	public LongLongHashTable() {
+		this(DEFAULT_SIZE, 0);
+	}
+
+	/**
+	 * Constructor that takes in a size, the size
+	 * is rounded up to the next power of two, and the value
+	 * getValue returns for missing keys
+	 * @param size of the hashtable
+	 * @param noEntryValue value that stands for a missing key
+	 */
+	public LongLongHashTable(int size, long noEntryValue) {
+		this.noEntryValue = noEntryValue;
+		zeroValue = noEntryValue;
+		int capacity = 2;
+		while(capacity < size && capacity < MAXIMUM_CAPACITY) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Creates empty key and value arrays
+	 * @param capacity power of two size of the arrays
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity-1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * @param key to hash
+	 * @return the home slot of the key
+	 */
+	private int home(long key) {
+		return (int)((key * GOLDEN) >>> shift);
+	}
+
+	/**
+	 * Finds the slot holding a key or the empty slot
+	 * that ends its probe run
+	 * @param key to look for, never 0
+	 * @return the slot of the key or the free slot it belongs in
+	 */
+	private int findSlot(long key) {
+		int i = home(key);
+		long k;
+		while((k = keys[i]) != 0) {
+			if(k == key) {
+				return i;
+			}
+			i = (i+1) & mask;
+		}
+		return i;
+	}
+
+	public boolean contains(long key) {
+		if(key == 0) {
+			return hasZeroKey;
+		}
+		return keys[findSlot(key)] != 0;
+	}
+
+	/**
+	 * Adds a key and value, replacing the value if the key is there
+	 * @param key the key
+	 * @param value the value
+	 * @return the replaced value or the no entry value
+	 */
+	public long add(long key, long value) {
+		if(key == 0) {
+			long temp = hasZeroKey ? zeroValue : noEntryValue;
+			zeroValue = value;
+			if(!hasZeroKey) {
+				hasZeroKey = true;
+				currentSize++;
+				modCount++;
+			}
+			return temp;
+		}
+		int i = findSlot(key);
+		if(keys[i] != 0) {
+			long temp = values[i];
+			values[i] = value;
+			return temp;
+		}
+		//At the largest capacity one slot has to stay empty to end every probe run
+		if(keys.length == MAXIMUM_CAPACITY && currentSize >= keys.length-1) {
+			throw new IllegalStateException("Table is full");
+		}
+		keys[i] = key;
+		values[i] = value;
+		currentSize++;
+		modCount++;
+
+		if(((double)currentSize/keys.length)>=MAX && keys.length < MAXIMUM_CAPACITY) {
+			arrayCopier(keys.length << 1);
+		}
+		return noEntryValue;
+	}
+
+	public boolean delete(long key) {
+		if(key == 0) {
+			if(!hasZeroKey) {
+				return false;
+			}
+			hasZeroKey = false;
+			zeroValue = noEntryValue;
+			currentSize--;
+			modCount++;
+			return true;
+		}
+		int i = findSlot(key);
+		if(keys[i] == 0) {
+			return false;
+		}
+		removeSlot(i);
+		return true;
+	}
+
+	/**
+	 * Empties a slot and shifts the rest of its probe run
+	 * back so later lookups never stop at the new hole
+	 * @param hole the slot to empty
+	 */
+	private void removeSlot(int hole) {
+		int i = hole;
+		while(true) {
+			i = (i+1) & mask;
+			long k = keys[i];
+			if(k == 0) {
+				break;
+			}
+			int h = home(k);
+			if(((i - h) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = k;
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = 0;
+		values[hole] = 0;
+		currentSize--;
+		modCount++;
+	}
+
+	/**
+	 * @param key to look up
+	 * @return the value of the key or the no entry value
+	 */
+	public long getValue(long key) {
+		if(key == 0) {
+			return zeroValue;
+		}
+		int i = home(key);
+		long k;
+		while((k = keys[i]) != 0) {
+			if(k == key) {
+				return values[i];
+			}
+			i = (i+1) & mask;
+		}
+		return noEntryValue;
+	}
+
+	/**
+	 * Scans for a key holding a value
+	 * @param value to look for
+	 * @param defaultKey returned when no key holds the value
+	 * @return a key holding the value or defaultKey
+	 */
+	public long getKey(long value, long defaultKey) {
+		if(hasZeroKey && zeroValue == value) {
+			return 0;
+		}
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != 0 && values[i] == value) {
+				return keys[i];
+			}
+		}
+		return defaultKey;
+	}
+
+	public int size() {
+		return currentSize;
+	}
+
+	public boolean isEmpty() {
+		return currentSize==0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, 0);
+		hasZeroKey = false;
+		zeroValue = noEntryValue;
+		currentSize = 0;
+		modCount++;
+	}
+
+	/**
+	 * @return the keys, handed out with nextLong so they are never boxed
+	 */
+	public PrimitiveIterator.OfLong keys() {
+		return new LongIterator();
+	}
+
+	/**
+	 * @return the values, handed out with nextLong so they are never boxed
+	 */
+	public PrimitiveIterator.OfLong values() {
+		return new ValueIterator();
+	}
+	
+	/**
+	 * @return the value getValue returns for missing keys
+	 */
+	public long getNoEntryValue() {
+		return noEntryValue;
+	}
+
+	/**
+	 * Grows the arrays and puts every key back
+	 * into its new home slot
+	 * @param newSize power of two size of the new arrays
+	 */
+	private void arrayCopier(int newSize) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(newSize);
+		modCount++;
+
+		for(int i = 0; i < oldKeys.length; i++) {
+			long k = oldKeys[i];
+			if(k != 0) {
+				int j = home(k);
+				while(keys[j] != 0) {
+					j = (j+1) & mask;
+				}
+				keys[j] = k;
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Walks the slot array in place, the zero
+	 * key comes first when it is present
+	 */
+	abstract class SlotIterator {
+
+		long[] instance = keys;
+		boolean zeroPending = hasZeroKey;
+		int expectedModCount = modCount;
+		int next = advance(0);
+
+		int advance(int from) {
+			while(from < instance.length && instance[from] == 0) {
+				from++;
+			}
+			return from;
+		}
+
+		public boolean hasNext() {
+			return zeroPending || next < instance.length;
+		}
+
+		/**
+		 * @return the slot of the next entry, -1 for the zero key
+		 */
+		int nextSlot() {
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(zeroPending) {
+				zeroPending = false;
+				return -1;
+			}
+			if(next >= instance.length) {
+				throw new NoSuchElementException();
+			}
+			int slot = next;
+			next = advance(next+1);
+			return slot;
+		}
+	}
+
+	class LongIterator extends SlotIterator implements PrimitiveIterator.OfLong {
+
+		@Override
+		public long nextLong() {
+			int slot = nextSlot();
+			return slot < 0 ? 0 : instance[slot];
+		}
+	}
+
+	class ValueIterator extends SlotIterator implements PrimitiveIterator.OfLong {
+
+		long[] instanceValues = values;
+
+		@Override
+		public long nextLong() {
+			int slot = nextSlot();
+			return slot < 0 ? zeroValue : instanceValues[slot];
+		}
+	}
+
+	public int getTableSize() {
+		return keys.length;
+	}
+}
@@ -0,0 +1,89 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A RingBuffer for any number of producer threads and one consumer thread.
+ * <p>Producers claim sequences with a compare and set on the tail, then
+ * store into the claimed slots. The consumer never looks at the tail: a
+ * slot is ready once it is not null, so a slow producer holding an early
+ * slot only delays the consumer at that slot and never lets it skip ahead.
+ * </p>
+ *
+ * @param <E> element
+ */
+public final class MpscRingBuffer<E> extends RingBuffer<E> {
+
+	/** Last head any producer saw, stale values only make a producer recheck */
+	private volatile long headCache;
+
+	/**
+	 * @param capacity rounded up to the next power of two
+	 */
+	public MpscRingBuffer(int capacity) {
+		this(capacity, WaitStrategy.YIELD);
+	}
+
+	/**
+	 * @param capacity rounded up to the next power of two
+	 * @param waitStrategy how put and take wait
+	 */
+	public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+		super(capacity, waitStrategy);
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		while (true) {
+			long t = tail.get();
+			if (t - headCache >= capacity()) {
+				long h = head.get();
+				headCache = h;
+				if (t - h >= capacity()) {
+					return false;
+				}
+			}
+			if (tail.compareAndSet(t, t+1)) {
+				buffer.lazySet((int) t & mask, e);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * The batch is copied first and checked for nulls, because once
+	 * sequences are claimed every one of them has to be filled
+	 */
+	@Override
+	public int offerAll(Collection<? extends E> items) {
+		List<E> batch = new ArrayList<>(items);
+		if (batch.contains(null)) {
+			throw new NullPointerException();
+		}
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		while (true) {
+			long t = tail.get();
+			int free = capacity() - (int) (t - headCache);
+			if (free < batch.size()) {
+				long h = head.get();
+				headCache = h;
+				free = capacity() - (int) (t - h);
+			}
+			int count = Math.min(free, batch.size());
+			if (count <= 0) {
+				return 0;
+			}
+			if (tail.compareAndSet(t, t + count)) {
+				for (int i = 0; i < count; i++) {
+					buffer.lazySet((int) (t + i) & mask, batch.get(i));
+				}
+				return count;
+			}
+		}
+	}
+}
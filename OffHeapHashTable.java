@@ -0,0 +1,656 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An open addressing hash table that keeps its entries outside of the heap.
+ * <p>Every entry is a fixed width slot of one state byte, the key bytes and
+ * the value bytes, written by the Serializers given to the constructor.
+ * The slots live in direct ByteBuffers, or in a memory mapped file when the
+ * table is opened with mapped, so the garbage collector never sees them and
+ * a mapped table is back as soon as the file is mapped again. The slots are
+ * split into chunks of at most 1GB so tables can grow past what a single
+ * ByteBuffer can address.
+ * </p>
+ * <p>Keys are hashed and compared by their serialized bytes, so a key
+ * Serializer must write equal keys as equal bytes. Null values are not
+ * allowed, a null from getValue always means the key is missing. A mapped
+ * table is only guaranteed to be complete on disk after force or close.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class OffHeapHashTable<K extends Comparable<K>, V> implements MapADT<K,V>, AutoCloseable {
+
+	/**
+	 * Writes and reads one type in a fixed number of bytes
+	 * @param <T> the type to store
+	 */
+	public interface Serializer<T> {
+
+		/**
+		 * @return the number of bytes every value takes
+		 */
+		int width();
+
+		void write(ByteBuffer buffer, int offset, T value);
+
+		T read(ByteBuffer buffer, int offset);
+	}
+
+	public static final Serializer<Long> LONG = new Serializer<Long>() {
+		@Override
+		public int width() {
+			return Long.BYTES;
+		}
+
+		@Override
+		public void write(ByteBuffer buffer, int offset, Long value) {
+			buffer.putLong(offset, value);
+		}
+
+		@Override
+		public Long read(ByteBuffer buffer, int offset) {
+			return buffer.getLong(offset);
+		}
+	};
+
+	public static final Serializer<Integer> INT = new Serializer<Integer>() {
+		@Override
+		public int width() {
+			return Integer.BYTES;
+		}
+
+		@Override
+		public void write(ByteBuffer buffer, int offset, Integer value) {
+			buffer.putInt(offset, value);
+		}
+
+		@Override
+		public Integer read(ByteBuffer buffer, int offset) {
+			return buffer.getInt(offset);
+		}
+	};
+
+	public static final Serializer<Double> DOUBLE = new Serializer<Double>() {
+		@Override
+		public int width() {
+			return Double.BYTES;
+		}
+
+		@Override
+		public void write(ByteBuffer buffer, int offset, Double value) {
+			buffer.putDouble(offset, value);
+		}
+
+		@Override
+		public Double read(ByteBuffer buffer, int offset) {
+			return buffer.getDouble(offset);
+		}
+	};
+
+	private static final long MAGIC = 0x4F4648545F763031L;
+	private static final int HEADER = 64;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int KEY_WIDTH_OFFSET = 8;
+	private static final int VALUE_WIDTH_OFFSET = 12;
+	private static final int CAPACITY_OFFSET = 16;
+	private static final int SIZE_OFFSET = 24;
+	private static final int MAX_CHUNK_BYTES = 1 << 30;
+	private static final long DEFAULT_SIZE = 16;
+	private static final byte EMPTY = 0;
+	private static final byte USED = 1;
+
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final int keyWidth;
+	private final int slotSize;
+	private final ByteBuffer keyScratch;
+	private final Path file;
+	private FileChannel channel;
+	private MappedByteBuffer header;
+
+	private ByteBuffer[] chunks;
+	private long capacity;
+	private long mask;
+	private int chunkShift;
+	private long chunkMask;
+	private long currentSize;
+	private double MAX = .75;
+
+	/**
+	 * Builds an empty table in direct memory
+	 * @param keySerializer writes the keys
+	 * @param valueSerializer writes the values
+	 */
+	public OffHeapHashTable(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this(DEFAULT_SIZE, keySerializer, valueSerializer);
+	}
+
+	/**
+	 * Builds an empty table in direct memory with room for
+	 * size slots, rounded up to a power of two
+	 * @param size of the hashtable
+	 * @param keySerializer writes the keys
+	 * @param valueSerializer writes the values
+	 */
+	public OffHeapHashTable(long size, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this(keySerializer, valueSerializer, null, null);
+		setCapacity(capacityFor(size));
+		chunks = new ByteBuffer[chunkCount()];
+		for(int i = 0; i < chunks.length; i++) {
+			chunks[i] = ByteBuffer.allocateDirect(chunkBytes());
+		}
+	}
+
+	private OffHeapHashTable(Serializer<K> keySerializer, Serializer<V> valueSerializer,
+			Path file, FileChannel channel) {
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.file = file;
+		this.channel = channel;
+		keyWidth = keySerializer.width();
+		slotSize = 1 + keyWidth + valueSerializer.width();
+		keyScratch = ByteBuffer.allocate(keyWidth);
+	}
+
+	/**
+	 * Opens a table stored in a file, creating the file if it does not
+	 * exist. An existing file is mapped as it is, nothing is re-inserted
+	 * @param file the file holding the table
+	 * @param size slots to start with when the file is new
+	 * @param keySerializer writes the keys
+	 * @param valueSerializer writes the values
+	 * @return the mapped table
+	 * @throws IOException if the file can not be mapped, or was
+	 *         written with different key or value widths
+	 */
+	public static <K extends Comparable<K>, V> OffHeapHashTable<K,V> mapped(Path file, long size,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		try {
+			OffHeapHashTable<K,V> table = new OffHeapHashTable<>(keySerializer, valueSerializer, file, channel);
+			boolean existing = channel.size() >= HEADER;
+			table.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+			if(existing) {
+				table.readHeader();
+			} else {
+				table.setCapacity(capacityFor(size));
+				table.writeHeader();
+			}
+			table.mapChunks();
+			return table;
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks the header of an existing file and loads its sizes
+	 * @throws IOException if the file does not hold a matching table
+	 */
+	private void readHeader() throws IOException {
+		if(header.getLong(MAGIC_OFFSET) != MAGIC) {
+			throw new IOException("Not an OffHeapHashTable file");
+		}
+		if(header.getInt(KEY_WIDTH_OFFSET) != keyWidth
+				|| header.getInt(VALUE_WIDTH_OFFSET) != valueSerializer.width()) {
+			throw new IOException("Key or value width does not match the file");
+		}
+		setCapacity(header.getLong(CAPACITY_OFFSET));
+		currentSize = header.getLong(SIZE_OFFSET);
+	}
+
+	private void writeHeader() {
+		header.putLong(MAGIC_OFFSET, MAGIC);
+		header.putInt(KEY_WIDTH_OFFSET, keyWidth);
+		header.putInt(VALUE_WIDTH_OFFSET, valueSerializer.width());
+		header.putLong(CAPACITY_OFFSET, capacity);
+		header.putLong(SIZE_OFFSET, currentSize);
+	}
+
+	/**
+	 * Maps every chunk of the file, growing the file if needed
+	 * @throws IOException if the mapping fails
+	 */
+	private void mapChunks() throws IOException {
+		int chunkBytes = chunkBytes();
+		chunks = new ByteBuffer[chunkCount()];
+		for(int i = 0; i < chunks.length; i++) {
+			chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + (long)i*chunkBytes, chunkBytes);
+		}
+	}
+
+	/**
+	 * Rounds a requested size up to a power of two
+	 * @param size requested size
+	 * @return the capacity to use
+	 */
+	private static long capacityFor(long size) {
+		long capacity = 2;
+		while(capacity < size && capacity < (1L << 62)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Sets the capacity and works out how the slots
+	 * are split into chunks
+	 * @param newCapacity power of two number of slots
+	 */
+	private void setCapacity(long newCapacity) {
+		capacity = newCapacity;
+		mask = capacity-1;
+		long perChunk = Math.min(capacity, Long.highestOneBit(MAX_CHUNK_BYTES / slotSize));
+		chunkShift = Long.numberOfTrailingZeros(perChunk);
+		chunkMask = perChunk-1;
+	}
+
+	private int chunkCount() {
+		return (int)(capacity >>> chunkShift);
+	}
+
+	private int chunkBytes() {
+		return (int)(chunkMask+1) * slotSize;
+	}
+
+	private ByteBuffer chunk(long slot) {
+		return chunks[(int)(slot >>> chunkShift)];
+	}
+
+	private int offset(long slot) {
+		return (int)(slot & chunkMask) * slotSize;
+	}
+
+	/**
+	 * Hashes keyWidth bytes eight at a time and
+	 * mixes the result with the murmur3 finalizer
+	 * @param buffer holding the key bytes
+	 * @param offset of the first key byte
+	 * @return the hash of the bytes
+	 */
+	private long hash(ByteBuffer buffer, int offset) {
+		long h = 0x9E3779B97F4A7C15L ^ keyWidth;
+		int i = 0;
+		for(; i + Long.BYTES <= keyWidth; i += Long.BYTES) {
+			h = Long.rotateLeft((h ^ buffer.getLong(offset+i)) * 0x9E3779B97F4A7C15L, 31);
+		}
+		for(; i < keyWidth; i++) {
+			h = Long.rotateLeft((h ^ buffer.get(offset+i)) * 0x9E3779B97F4A7C15L, 31);
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * Copies bytes between two buffers without moving either
+	 * buffer's position, through views limited to the range
+	 * @param src buffer to read from
+	 * @param srcOffset of the first byte to read
+	 * @param dst buffer to write to
+	 * @param dstOffset of the first byte to write
+	 * @param length number of bytes to copy
+	 */
+	private static void copy(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int length) {
+		ByteBuffer from = src.duplicate();
+		from.limit(srcOffset + length);
+		from.position(srcOffset);
+		ByteBuffer to = dst.duplicate();
+		to.position(dstOffset);
+		to.put(from);
+	}
+
+	/**
+	 * Compares the key in keyScratch with the key of a slot
+	 * @param buffer chunk holding the slot
+	 * @param offset of the first key byte in the slot
+	 * @return true if the bytes match
+	 */
+	private boolean keyMatches(ByteBuffer buffer, int offset) {
+		int i = 0;
+		for(; i + Long.BYTES <= keyWidth; i += Long.BYTES) {
+			if(buffer.getLong(offset+i) != keyScratch.getLong(i)) {
+				return false;
+			}
+		}
+		for(; i < keyWidth; i++) {
+			if(buffer.get(offset+i) != keyScratch.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Serializes the key into keyScratch and probes for it
+	 * @param key to look for
+	 * @return the slot of the key, or -(free slot)-1 if it is missing
+	 */
+	private long findSlot(K key) {
+		keySerializer.write(keyScratch, 0, key);
+		long slot = hash(keyScratch, 0) & mask;
+		while(true) {
+			ByteBuffer buffer = chunk(slot);
+			int offset = offset(slot);
+			if(buffer.get(offset) == EMPTY) {
+				return -slot-1;
+			}
+			if(keyMatches(buffer, offset+1)) {
+				return slot;
+			}
+			slot = (slot+1) & mask;
+		}
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return findSlot(key) >= 0;
+	}
+
+	@Override
+	public V add(K key, V value) {
+		if(value == null) {
+			throw new NullPointerException();
+		}
+		long slot = findSlot(key);
+		if(slot >= 0) {
+			ByteBuffer buffer = chunk(slot);
+			int valueOffset = offset(slot) + 1 + keyWidth;
+			V temp = valueSerializer.read(buffer, valueOffset);
+			valueSerializer.write(buffer, valueOffset, value);
+			return temp;
+		}
+		slot = -slot-1;
+		ByteBuffer buffer = chunk(slot);
+		int offset = offset(slot);
+		buffer.put(offset, USED);
+		copy(keyScratch, 0, buffer, offset+1, keyWidth);
+		valueSerializer.write(buffer, offset+1+keyWidth, value);
+		setSize(currentSize+1);
+
+		if(currentSize >= capacity*MAX && capacity < (1L << 62)) {
+			arrayCopier(capacity << 1);
+		}
+		return null;
+	}
+
+	@Override
+	public boolean delete(K key) {
+		long hole = findSlot(key);
+		if(hole < 0) {
+			return false;
+		}
+		//Shift the rest of the probe run back so lookups never stop at the hole
+		long slot = hole;
+		while(true) {
+			slot = (slot+1) & mask;
+			ByteBuffer buffer = chunk(slot);
+			int offset = offset(slot);
+			if(buffer.get(offset) == EMPTY) {
+				break;
+			}
+			long home = hash(buffer, offset+1) & mask;
+			if(((slot - home) & mask) >= ((slot - hole) & mask)) {
+				copy(buffer, offset, chunk(hole), offset(hole), slotSize);
+				hole = slot;
+			}
+		}
+		chunk(hole).put(offset(hole), EMPTY);
+		setSize(currentSize-1);
+		return true;
+	}
+
+	@Override
+	public V getValue(K key) {
+		long slot = findSlot(key);
+		if(slot < 0) {
+			return null;
+		}
+		return valueSerializer.read(chunk(slot), offset(slot) + 1 + keyWidth);
+	}
+
+	@Override
+	public K getKey(V value) {
+		for(ByteBuffer buffer : chunks) {
+			for(int offset = 0; offset < buffer.capacity(); offset += slotSize) {
+				if(buffer.get(offset) == USED
+						&& valueSerializer.read(buffer, offset+1+keyWidth).equals(value)) {
+					return keySerializer.read(buffer, offset+1);
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return (int)Math.min(currentSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the number of entries, which may pass Integer.MAX_VALUE
+	 */
+	public long longSize() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return currentSize==0;
+	}
+
+	@Override
+	public void clear() {
+		for(ByteBuffer buffer : chunks) {
+			for(int offset = 0; offset < buffer.capacity(); offset += slotSize) {
+				buffer.put(offset, EMPTY);
+			}
+		}
+		setSize(0);
+	}
+
+	private void setSize(long size) {
+		currentSize = size;
+		if(header != null) {
+			header.putLong(SIZE_OFFSET, size);
+		}
+	}
+
+	@Override
+	public Iterator<K> keys() {
+		return new SlotIterator<K>() {
+			@Override
+			K read(ByteBuffer buffer, int offset) {
+				return keySerializer.read(buffer, offset+1);
+			}
+		};
+	}
+
+	@Override
+	public Iterator<V> values() {
+		return new SlotIterator<V>() {
+			@Override
+			V read(ByteBuffer buffer, int offset) {
+				return valueSerializer.read(buffer, offset+1+keyWidth);
+			}
+		};
+	}
+
+	/**
+	 * Doubles the number of slots and puts every entry back into
+	 * its new home slot
+	 * @param newCapacity power of two number of slots
+	 */
+	private void arrayCopier(long newCapacity) {
+		if(channel != null) {
+			growFile(newCapacity);
+			return;
+		}
+		ByteBuffer[] oldChunks = chunks;
+		setCapacity(newCapacity);
+		chunks = new ByteBuffer[chunkCount()];
+		for(int i = 0; i < chunks.length; i++) {
+			chunks[i] = ByteBuffer.allocateDirect(chunkBytes());
+		}
+		reinsert(oldChunks);
+	}
+
+	/**
+	 * Grows a mapped table by building the bigger table in a new file
+	 * beside the old one, forcing it, and renaming it over the old file.
+	 * A crash part way leaves either the old file or the new one whole.
+	 * The old mappings are only dropped, the garbage collector unmaps them
+	 * @param newCapacity power of two number of slots
+	 */
+	private void growFile(long newCapacity) {
+		Path grown = file.resolveSibling(file.getFileName() + ".grow");
+		FileChannel oldChannel = channel;
+		MappedByteBuffer oldHeader = header;
+		ByteBuffer[] oldChunks = chunks;
+		long oldCapacity = capacity;
+		FileChannel grownChannel = null;
+		try {
+			channel = grownChannel = FileChannel.open(grown, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+			setCapacity(newCapacity);
+			writeHeader();
+			mapChunks();
+			reinsert(oldChunks);
+			force();
+			Files.move(grown, file, StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			channel = oldChannel;
+			header = oldHeader;
+			chunks = oldChunks;
+			setCapacity(oldCapacity);
+			try {
+				if(grownChannel != null) {
+					grownChannel.close();
+				}
+				Files.deleteIfExists(grown);
+			} catch(IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw new IllegalStateException("Could not grow " + file, e);
+		}
+		try {
+			oldChannel.close();
+		} catch(IOException e) {
+			throw new IllegalStateException("Could not close the old " + file, e);
+		}
+	}
+
+	/**
+	 * Puts every used slot of the old chunks into
+	 * its home slot in the current, empty chunks
+	 * @param oldChunks chunks of the table before it grew
+	 */
+	private void reinsert(ByteBuffer[] oldChunks) {
+		for(ByteBuffer old : oldChunks) {
+			for(int offset = 0; offset < old.capacity(); offset += slotSize) {
+				if(old.get(offset) == USED) {
+					long slot = hash(old, offset+1) & mask;
+					while(chunk(slot).get(offset(slot)) != EMPTY) {
+						slot = (slot+1) & mask;
+					}
+					copy(old, offset, chunk(slot), offset(slot), slotSize);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes every change of a mapped table out to its file,
+	 * does nothing for a table in direct memory
+	 */
+	public void force() {
+		if(channel != null) {
+			for(ByteBuffer buffer : chunks) {
+				((MappedByteBuffer) buffer).force();
+			}
+			header.force();
+		}
+	}
+
+	/**
+	 * Forces a mapped table to its file and closes the file. The
+	 * table must not be used afterwards
+	 * @throws IOException if closing the file fails
+	 */
+	@Override
+	public void close() throws IOException {
+		if(channel != null) {
+			force();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Walks the slots chunk by chunk and hands out
+	 * whatever read picks out of each used slot
+	 * @param <T> key or value
+	 */
+	abstract class SlotIterator<T> implements Iterator<T> {
+
+		ByteBuffer[] instance = chunks;
+		int chunkIndex;
+		int offset = -slotSize;
+
+		SlotIterator() {
+			advance();
+		}
+
+		/**
+		 * Moves to the next used slot
+		 */
+		private void advance() {
+			offset += slotSize;
+			while(chunkIndex < instance.length) {
+				ByteBuffer buffer = instance[chunkIndex];
+				for(; offset < buffer.capacity(); offset += slotSize) {
+					if(buffer.get(offset) == USED) {
+						return;
+					}
+				}
+				chunkIndex++;
+				offset = 0;
+			}
+		}
+
+		abstract T read(ByteBuffer buffer, int offset);
+
+		@Override
+		public boolean hasNext() {
+			return chunkIndex < instance.length;
+		}
+
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T temp = read(instance[chunkIndex], offset);
+			advance();
+			return temp;
+		}
+	}
+
+	public long getTableSize() {
+		return capacity;
+	}
+}
@@ -0,0 +1,300 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An open addressing version of the HashTable.
+ * <p>Keys and values live in two parallel arrays instead of a list of
+ * Entry objects per bucket, so a mapping costs two array slots and a
+ * lookup walks neighbouring slots instead of chasing list nodes.
+ * Collisions are handled with linear probing and deletes shift the rest
+ * of the probe run back so no tombstones are ever left behind.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class OpenHashTable<K extends Comparable<K>, V> implements MapADT<K,V> {
+
+	private static final int DEFAULT_SIZE = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private K[] keys;
+	private V[] values;
+	private int currentSize;
+	private int mask;
+	private int modCount;
+	private double MAX = .75;
+
+	/**
+	 * Default Constructor
+	 */
+	public OpenHashTable() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Constructor that takes in a size, the size
+	 * is rounded up to the next power of two
+	 * @param size of the hashtable
+	 */
+	public OpenHashTable(int size) {
+		allocate(capacityFor(size));
+	}
+
+	/**
+	 * Rounds a requested size up to a power of two
+	 * @param size requested size
+	 * @return the capacity to use
+	 */
+	private static int capacityFor(int size) {
+		int capacity = 2;
+		while(capacity < size && capacity < MAXIMUM_CAPACITY) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Creates empty key and value arrays
+	 * @param capacity power of two size of the arrays
+	 */
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		keys = (K[]) new Comparable<?>[capacity];
+		values = (V[]) new Object[capacity];
+		mask = capacity-1;
+	}
+
+	/**
+	 * Mixes the hash with the same murmur3 finalizer the
+	 * HashTable uses, since only the low bits pick the slot
+	 * @param key to hash
+	 * @return the home slot of the key
+	 */
+	private int home(K key) {
+		return HashTable.MURMUR.applyAsInt(key.hashCode()) & mask;
+	}
+
+	/**
+	 * Finds the slot holding a key or the empty slot
+	 * that ends its probe run
+	 * @param key to look for
+	 * @return the slot of the key or the free slot it belongs in
+	 */
+	private int findSlot(K key) {
+		int i = home(key);
+		K k;
+		while((k = keys[i]) != null) {
+			if(k == key || key.compareTo(k)==0) {
+				return i;
+			}
+			i = (i+1) & mask;
+		}
+		return i;
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return keys[findSlot(key)] != null;
+	}
+
+	@Override
+	public V add(K key, V value) {
+		int i = findSlot(key);
+		if(keys[i] != null) {
+			V temp = values[i];
+			values[i] = value;
+			return temp;
+		}
+		//At the largest capacity one slot has to stay empty to end every probe run
+		if(keys.length == MAXIMUM_CAPACITY && currentSize >= keys.length-1) {
+			throw new IllegalStateException("OpenHashTable is full");
+		}
+		keys[i] = key;
+		values[i] = value;
+		currentSize++;
+		modCount++;
+
+		if(((double)currentSize/keys.length)>=MAX && keys.length < MAXIMUM_CAPACITY) {
+			arrayCopier(keys.length << 1);
+		}
+		return null;
+	}
+
+	@Override
+	public boolean delete(K key) {
+		int i = findSlot(key);
+		if(keys[i] == null) {
+			return false;
+		}
+		removeSlot(i);
+		return true;
+	}
+
+	/**
+	 * Empties a slot and shifts the rest of its probe run
+	 * back so later lookups never stop at the new hole
+	 * @param hole the slot to empty
+	 */
+	private void removeSlot(int hole) {
+		int i = hole;
+		while(true) {
+			i = (i+1) & mask;
+			K k = keys[i];
+			if(k == null) {
+				break;
+			}
+			int h = home(k);
+			//Only move the entry if its home is not between the hole and i
+			if(((i - h) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = k;
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = null;
+		values[hole] = null;
+		currentSize--;
+		modCount++;
+	}
+
+	@Override
+	public V getValue(K key) {
+		int i = home(key);
+		K k;
+		while((k = keys[i]) != null) {
+			if(k == key || key.compareTo(k)==0) {
+				return values[i];
+			}
+			i = (i+1) & mask;
+		}
+		return null;
+	}
+
+	@Override
+	public K getKey(V value) {
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != null && Objects.equals(values[i], value)) {
+				return keys[i];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return currentSize==0;
+	}
+
+	@Override
+	public void clear() {
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = null;
+			values[i] = null;
+		}
+		currentSize = 0;
+		modCount++;
+	}
+
+	@Override
+	public Iterator<K> keys() {
+		return new OpenIterator<K>() {
+			@Override
+			K read(int slot) {
+				return keyArray[slot];
+			}
+		};
+	}
+
+	@Override
+	public Iterator<V> values() {
+		return new OpenIterator<V>() {
+			@Override
+			V read(int slot) {
+				return valueArray[slot];
+			}
+		};
+	}
+
+	/**
+	 * Grows the arrays and puts every key back
+	 * into its new home slot
+	 * @param newSize power of two size of the new arrays
+	 */
+	private void arrayCopier(int newSize) {
+		K[] oldKeys = keys;
+		V[] oldValues = values;
+		allocate(newSize);
+		modCount++;
+
+		for(int i = 0; i < oldKeys.length; i++) {
+			K k = oldKeys[i];
+			if(k != null) {
+				int j = home(k);
+				while(keys[j] != null) {
+					j = (j+1) & mask;
+				}
+				keys[j] = k;
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Walks the slot arrays in place and hands out
+	 * whatever read picks out of each used slot.
+	 * The arrays are captured up front so a resize can not
+	 * shift slots under it, and add or delete is detected
+	 * @param <T> key or value
+	 */
+	abstract class OpenIterator<T> implements Iterator<T> {
+
+		K[] keyArray = keys;
+		V[] valueArray = values;
+		int expectedModCount = modCount;
+		int next = advance(0);
+
+		/**
+		 * Finds the next used slot
+		 * @param from slot to start looking at
+		 * @return the used slot or the length of the array
+		 */
+		int advance(int from) {
+			while(from < keyArray.length && keyArray[from] == null) {
+				from++;
+			}
+			return from;
+		}
+
+		abstract T read(int slot);
+
+		@Override
+		public boolean hasNext() {
+			return next < keyArray.length;
+		}
+
+		@Override
+		public T next() {
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T temp = read(next);
+			next = advance(next+1);
+			return temp;
+		}
+	}
+
+	public int getTableSize() {
+		return keys.length;
+	}
+}
@@ -0,0 +1,400 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A persistent version of the BinarySearchTree.
+ * <p>Nodes never change once built. Adding or deleting copies only the
+ * nodes on the path from the root to the change and shares every other
+ * node with the previous version, so each version is a Snapshot that stays
+ * valid forever. The current Snapshot is published through an
+ * AtomicReference: snapshot is O(1), and any number of reader threads can
+ * walk the version they took without locks while a writer publishes new
+ * ones. The tree is kept balanced as an AVL tree so every path is O(log n).
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class PersistentBinarySearchTree<K extends Comparable<K>, V> implements MapADT<K,V> {
+
+	private final AtomicReference<Snapshot<K,V>> current = new AtomicReference<>(Snapshot.emptySnapshot());
+
+	/**
+	 * Immutable node, height and size describe its subtree
+	 * @param <K> key
+	 * @param <V> value
+	 */
+	static final class Node<K,V> {
+		final K k;
+		final V v;
+		final Node<K,V> left;
+		final Node<K,V> right;
+		final int height;
+		final int size;
+
+		Node(K key, V value, Node<K,V> left, Node<K,V> right) {
+			k = key;
+			v = value;
+			this.left = left;
+			this.right = right;
+			height = 1 + Math.max(height(left), height(right));
+			size = 1 + size(left) + size(right);
+		}
+	}
+
+	static int height(Node<?,?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	static int size(Node<?,?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * One version of the tree. Adding or deleting returns a new
+	 * Snapshot and leaves this one untouched
+	 * @param <K> key
+	 * @param <V> value
+	 */
+	public static final class Snapshot<K extends Comparable<K>, V> implements Iterable<K> {
+
+		private final Node<K,V> root;
+
+		private Snapshot(Node<K,V> root) {
+			this.root = root;
+		}
+
+		/**
+		 * @return a version with no entries
+		 */
+		public static <K extends Comparable<K>, V> Snapshot<K,V> emptySnapshot() {
+			return new Snapshot<>(null);
+		}
+
+		private Node<K,V> searchNode(K key) {
+			Node<K,V> next = root;
+			while (next != null) {
+				int comp = key.compareTo(next.k);
+				if (comp == 0) {
+					return next;
+				}
+				next = comp > 0 ? next.right : next.left;
+			}
+			return null;
+		}
+
+		public boolean contains(K key) {
+			return searchNode(key) != null;
+		}
+
+		public V getValue(K key) {
+			Node<K,V> node = searchNode(key);
+			return node == null ? null : node.v;
+		}
+
+		public K getKey(V value) {
+			for (NodeIterator<K,V,K> it = new KeyIterator<>(root); it.hasNext();) {
+				Node<K,V> node = it.nextNode();
+				if (Objects.equals(node.v, value)) {
+					return node.k;
+				}
+			}
+			return null;
+		}
+
+		public int size() {
+			return PersistentBinarySearchTree.size(root);
+		}
+
+		public boolean isEmpty() {
+			return root == null;
+		}
+
+		/**
+		 * @param key the key
+		 * @param value the value
+		 * @return a version with the key mapped to the value
+		 */
+		public Snapshot<K,V> add(K key, V value) {
+			return add(key, value, null);
+		}
+
+		/**
+		 * @param replaced if not null, given the node the key had
+		 * @return a version with the key mapped to the value
+		 */
+		Snapshot<K,V> add(K key, V value, Replaced<K,V> replaced) {
+			if (key == null) {
+				throw new NullPointerException();
+			}
+			Node<K,V> newRoot = insert(root, key, value, replaced);
+			return newRoot == root ? this : new Snapshot<>(newRoot);
+		}
+
+		/**
+		 * @param key the key
+		 * @return a version without the key, or this one if the key is missing
+		 */
+		public Snapshot<K,V> delete(K key) {
+			if (searchNode(key) == null) {
+				return this;
+			}
+			return new Snapshot<>(remove(root, key));
+		}
+
+		/**
+		 * @return the keys in order
+		 */
+		@Override
+		public Iterator<K> iterator() {
+			return keys();
+		}
+
+		public Iterator<K> keys() {
+			return new KeyIterator<>(root);
+		}
+
+		public Iterator<V> values() {
+			return new ValueIterator<>(root);
+		}
+	}
+
+	/**
+	 * Where insert leaves the node holding the key before the
+	 * add, so add learns the old value from its one descent
+	 * @param <K> key
+	 * @param <V> value
+	 */
+	static final class Replaced<K,V> {
+		Node<K,V> node;
+	}
+
+	/**
+	 * Path copying insert, returns the same node when nothing changed
+	 */
+	private static <K extends Comparable<K>, V> Node<K,V> insert(Node<K,V> node, K key, V value,
+			Replaced<K,V> replaced) {
+		if (node == null) {
+			return new Node<>(key, value, null, null);
+		}
+		int comp = key.compareTo(node.k);
+		if (comp == 0) {
+			if (replaced != null) {
+				replaced.node = node;
+			}
+			return node.v == value ? node : new Node<>(node.k, value, node.left, node.right);
+		}
+		if (comp < 0) {
+			Node<K,V> left = insert(node.left, key, value, replaced);
+			return left == node.left ? node : balance(node.k, node.v, left, node.right);
+		}
+		Node<K,V> right = insert(node.right, key, value, replaced);
+		return right == node.right ? node : balance(node.k, node.v, node.left, right);
+	}
+
+	/**
+	 * Path copying delete, the key must be in the subtree
+	 */
+	private static <K extends Comparable<K>, V> Node<K,V> remove(Node<K,V> node, K key) {
+		int comp = key.compareTo(node.k);
+		if (comp < 0) {
+			return balance(node.k, node.v, remove(node.left, key), node.right);
+		}
+		if (comp > 0) {
+			return balance(node.k, node.v, node.left, remove(node.right, key));
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		Node<K,V> newGuy = node.right;
+		while (newGuy.left != null) {
+			newGuy = newGuy.left;
+		}
+		return balance(newGuy.k, newGuy.v, node.left, removeMin(node.right));
+	}
+
+	private static <K extends Comparable<K>, V> Node<K,V> removeMin(Node<K,V> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return balance(node.k, node.v, removeMin(node.left), node.right);
+	}
+
+	/**
+	 * Builds a node from its parts, rotating new copies
+	 * when one side is two levels taller than the other
+	 */
+	private static <K,V> Node<K,V> balance(K k, V v, Node<K,V> left, Node<K,V> right) {
+		int diff = height(left) - height(right);
+		if (diff > 1) {
+			if (height(left.left) < height(left.right)) {
+				Node<K,V> lr = left.right;
+				return new Node<>(lr.k, lr.v,
+						new Node<>(left.k, left.v, left.left, lr.left),
+						new Node<>(k, v, lr.right, right));
+			}
+			return new Node<>(left.k, left.v, left.left, new Node<>(k, v, left.right, right));
+		}
+		if (diff < -1) {
+			if (height(right.right) < height(right.left)) {
+				Node<K,V> rl = right.left;
+				return new Node<>(rl.k, rl.v,
+						new Node<>(k, v, left, rl.left),
+						new Node<>(right.k, right.v, rl.right, right.right));
+			}
+			return new Node<>(right.k, right.v, new Node<>(k, v, left, right.left), right.right);
+		}
+		return new Node<>(k, v, left, right);
+	}
+
+	/**
+	 * In order walk with an explicit stack, nodes never
+	 * change so it can not be broken by writers
+	 */
+	abstract static class NodeIterator<K,V,T> implements Iterator<T> {
+
+		private final Deque<Node<K,V>> stack = new ArrayDeque<>();
+
+		NodeIterator(Node<K,V> root) {
+			pushLeft(root);
+		}
+
+		private void pushLeft(Node<K,V> node) {
+			for (; node != null; node = node.left) {
+				stack.push(node);
+			}
+		}
+
+		Node<K,V> nextNode() {
+			if (stack.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			Node<K,V> top = stack.pop();
+			pushLeft(top.right);
+			return top;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+	}
+
+	static final class KeyIterator<K,V> extends NodeIterator<K,V,K> {
+
+		KeyIterator(Node<K,V> root) {
+			super(root);
+		}
+
+		@Override
+		public K next() {
+			return nextNode().k;
+		}
+	}
+
+	static final class ValueIterator<K,V> extends NodeIterator<K,V,V> {
+
+		ValueIterator(Node<K,V> root) {
+			super(root);
+		}
+
+		@Override
+		public V next() {
+			return nextNode().v;
+		}
+	}
+
+	/**
+	 * Takes the current version in O(1). It never changes, so it can
+	 * be read for as long as needed while writers keep publishing
+	 * @return the current version
+	 */
+	public Snapshot<K,V> snapshot() {
+		return current.get();
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return current.get().contains(key);
+	}
+
+	/**
+	 * Publishes a version with the key added. Writers from several
+	 * threads are safe, a writer that loses the race redoes its copy
+	 * on top of the winner's version
+	 */
+	@Override
+	public V add(K key, V value) {
+		Replaced<K,V> replaced = new Replaced<>();
+		while (true) {
+			Snapshot<K,V> snap = current.get();
+			replaced.node = null;
+			Snapshot<K,V> next = snap.add(key, value, replaced);
+			if (next == snap || current.compareAndSet(snap, next)) {
+				return replaced.node == null ? null : replaced.node.v;
+			}
+		}
+	}
+
+	@Override
+	public boolean delete(K key) {
+		while (true) {
+			Snapshot<K,V> snap = current.get();
+			Snapshot<K,V> next = snap.delete(key);
+			if (next == snap) {
+				return false;
+			}
+			if (current.compareAndSet(snap, next)) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public V getValue(K key) {
+		return current.get().getValue(key);
+	}
+
+	@Override
+	public K getKey(V value) {
+		return current.get().getKey(value);
+	}
+
+	@Override
+	public int size() {
+		return current.get().size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return current.get().isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		current.set(Snapshot.emptySnapshot());
+	}
+
+	/**
+	 * @return the keys of the current version
+	 */
+	@Override
+	public Iterator<K> keys() {
+		return current.get().keys();
+	}
+
+	/**
+	 * @return the values of the current version
+	 */
+	@Override
+	public Iterator<V> values() {
+		return current.get().values();
+	}
+}
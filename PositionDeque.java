@@ -0,0 +1,92 @@
+import java.util.NoSuchElementException;
+
+/**
+ * A ring of int positions with both ends open, used by the primitive
+ * CircArrayLists for their monotonic min and max queues.
+ * <p>Positions only ever count up or down by one as values enter and leave
+ * a list, so they are compared and subtracted with plain int arithmetic and
+ * may wrap around. Like the lists the ring is a power of two, grows when
+ * full and halves once it is a quarter full.
+ * </p>
+ */
+final class PositionDeque {
+
+    private static final int DEFAULT_SIZE = 16;
+
+    private int[] ring = new int[DEFAULT_SIZE];
+
+    private int front;
+
+    private int size;
+
+    boolean isEmpty() {
+        return size==0;
+    }
+
+    int peekFirst() {
+        if(size==0)
+            throw new NoSuchElementException();
+        return ring[front];
+    }
+
+    int peekLast() {
+        if(size==0)
+            throw new NoSuchElementException();
+        return ring[(front + size - 1) & (ring.length-1)];
+    }
+
+    void addFirst(int position) {
+        if(size==ring.length)
+            resize(ring.length*2);
+        front = (front - 1) & (ring.length-1);
+        ring[front] = position;
+        size++;
+    }
+
+    void addLast(int position) {
+        if(size==ring.length)
+            resize(ring.length*2);
+        ring[(front + size) & (ring.length-1)] = position;
+        size++;
+    }
+
+    void removeFirst() {
+        if(size==0)
+            throw new NoSuchElementException();
+        front = (front + 1) & (ring.length-1);
+        size--;
+        shrinkIfSparse();
+    }
+
+    void removeLast() {
+        if(size==0)
+            throw new NoSuchElementException();
+        size--;
+        shrinkIfSparse();
+    }
+
+    void clear() {
+        front = 0;
+        size = 0;
+        if(ring.length > DEFAULT_SIZE)
+            ring = new int[DEFAULT_SIZE];
+    }
+
+    private void shrinkIfSparse() {
+        if(ring.length > DEFAULT_SIZE && size <= ring.length/4)
+            resize(ring.length/2);
+    }
+
+    /**
+     * Moves the positions to a new ring in at most two
+     * arraycopies, resetting the front to 0
+     */
+    private void resize(int newSize) {
+        int[] next = new int[newSize];
+        int first = Math.min(size, ring.length-front);
+        System.arraycopy(ring, front, next, 0, first);
+        System.arraycopy(ring, 0, next, first, size-first);
+        ring = next;
+        front = 0;
+    }
+}
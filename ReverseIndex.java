@@ -0,0 +1,139 @@
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A value to key index used by the maps in bidirectional mode
+ * so getKey does not have to scan every entry.
+ * <p>When several keys hold equal values getKey answers with the key
+ * that has held its value the longest. Removing that key hands the
+ * value over to the next oldest one. A value held by a single key is
+ * stored as that key alone, only shared values pay for a group, and
+ * adding or removing a key of a shared value is O(log d) for d keys
+ * sharing it.
+ * </p>
+ * <p>Values are looked up by equals and hashCode, the same test getKey
+ * uses when it scans. Keys are told apart with the map's own key order
+ * rather than equals, so two keys the map treats as one key are one key
+ * here too even when their equals disagrees.
+ * </p>
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+class ReverseIndex<K, V> {
+
+	/**
+	 * Keys sharing one value. Each key gets a number as it joins,
+	 * so the oldest one is the first entry of byAge
+	 * @param <K> key
+	 */
+	private static final class Duplicates<K> {
+
+		final TreeMap<K, Long> ages;
+		final TreeMap<Long, K> byAge = new TreeMap<>();
+		long nextAge;
+
+		Duplicates(Comparator<? super K> order) {
+			ages = new TreeMap<>(order);
+		}
+
+		void add(K key) {
+			if(!ages.containsKey(key)) {
+				ages.put(key, nextAge);
+				byAge.put(nextAge++, key);
+			}
+		}
+
+		void remove(K key) {
+			Long age = ages.remove(key);
+			if(age != null) {
+				byAge.remove(age);
+			}
+		}
+
+		K oldest() {
+			return byAge.firstEntry().getValue();
+		}
+
+		int size() {
+			return ages.size();
+		}
+	}
+
+	/** Holds a key for a value with one key, Duplicates for a shared one */
+	private final Map<V, Object> index = new HashMap<>();
+	private final Comparator<? super K> order;
+
+	/**
+	 * @param order the key order of the map being indexed
+	 */
+	ReverseIndex(Comparator<? super K> order) {
+		this.order = order;
+	}
+
+	/**
+	 * @return true if the map treats both keys as the same key
+	 */
+	private boolean same(K a, K b) {
+		return a == b || order.compare(a, b) == 0;
+	}
+
+	/**
+	 * Records that a key now holds a value
+	 * @param value the value
+	 * @param key the key holding it
+	 */
+	@SuppressWarnings("unchecked")
+	void put(V value, K key) {
+		Object current = index.get(value);
+		if(current == null) {
+			index.put(value, key);
+		} else if(current instanceof Duplicates) {
+			((Duplicates<K>) current).add(key);
+		} else if(!same((K) current, key)) {
+			Duplicates<K> keys = new Duplicates<>(order);
+			keys.add((K) current);
+			keys.add(key);
+			index.put(value, keys);
+		}
+	}
+
+	/**
+	 * Records that a key no longer holds a value
+	 * @param value the value
+	 * @param key the key that held it
+	 */
+	@SuppressWarnings("unchecked")
+	void remove(V value, K key) {
+		Object current = index.get(value);
+		if(current instanceof Duplicates) {
+			Duplicates<K> keys = (Duplicates<K>) current;
+			keys.remove(key);
+			if(keys.size() == 1) {
+				index.put(value, keys.oldest());
+			}
+		} else if(current != null && same((K) current, key)) {
+			index.remove(value);
+		}
+	}
+
+	/**
+	 * Looks up the key holding a value
+	 * @param value to look for
+	 * @return the oldest key holding the value or null
+	 */
+	@SuppressWarnings("unchecked")
+	K get(Object value) {
+		Object current = index.get(value);
+		if(current instanceof Duplicates) {
+			return ((Duplicates<K>) current).oldest();
+		}
+		return (K) current;
+	}
+
+	void clear() {
+		index.clear();
+	}
+}
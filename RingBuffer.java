@@ -0,0 +1,278 @@
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue between threads on a fixed, power of two ring.
+ * <p>This is the head and tail cursor ring of the CircArrayList made safe to
+ * share: the capacity never changes, the cursors are sequence counters that
+ * only grow and are masked into the ring, and each sits in its own padded
+ * object so the producer and consumer never write the same cache line. A
+ * slot is published by storing the element into it, and the single consumer
+ * takes it by storing null back, so poll and drainTo never lock. The
+ * producer side comes in two flavors, SpscRingBuffer for a single producer
+ * thread and MpscRingBuffer for any number of them.
+ * </p>
+ * <p>Null elements are not allowed. put and take wait with the chosen
+ * WaitStrategy while the ring is full or empty.
+ * </p>
+ *
+ * @param <E> element
+ */
+public abstract class RingBuffer<E> {
+
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	/**
+	 * How a thread waits in put or take while the ring is full or empty
+	 */
+	public enum WaitStrategy {
+		/** Busy spins, lowest latency but burns a core */
+		SPIN {
+			@Override
+			void idle(int round) {
+				Thread.onSpinWait();
+			}
+		},
+		/** Spins briefly then gives the core to other threads */
+		YIELD {
+			@Override
+			void idle(int round) {
+				if (round < SPIN_ROUNDS) {
+					Thread.onSpinWait();
+				} else {
+					Thread.yield();
+				}
+			}
+		},
+		/** Spins and yields briefly then sleeps in short parks */
+		PARK {
+			@Override
+			void idle(int round) {
+				if (round < SPIN_ROUNDS) {
+					Thread.onSpinWait();
+				} else if (round < 2 * SPIN_ROUNDS) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+			}
+		};
+
+		private static final int SPIN_ROUNDS = 100;
+		private static final long PARK_NANOS = 50_000;
+
+		/**
+		 * Waits once
+		 * @param round how many times this thread has waited in a row
+		 */
+		abstract void idle(int round);
+	}
+
+	/**
+	 * Left padding so the value does not share a cache line with
+	 * whatever the JVM puts in front of the Sequence
+	 */
+	static class LhsPadding {
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	static class Value extends LhsPadding {
+		volatile long value;
+	}
+
+	/**
+	 * A counter alone on its cache line. Fields of a superclass are laid
+	 * out before those of a subclass, so the padding on both sides can
+	 * not be reordered away
+	 */
+	static final class Sequence extends Value {
+		long p9, p10, p11, p12, p13, p14, p15;
+
+		private static final AtomicLongFieldUpdater<Value> VALUE =
+				AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+		long get() {
+			return value;
+		}
+
+		/**
+		 * Ordered store, it is seen after every write before it
+		 * but does not wait for the store buffer to drain
+		 */
+		void lazySet(long newValue) {
+			VALUE.lazySet(this, newValue);
+		}
+
+		boolean compareAndSet(long expect, long update) {
+			return VALUE.compareAndSet(this, expect, update);
+		}
+	}
+
+	final AtomicReferenceArray<E> buffer;
+	final int mask;
+	final WaitStrategy waitStrategy;
+	/** Next sequence the consumer takes, only the consumer writes it */
+	final Sequence head = new Sequence();
+	/** Next sequence a producer claims */
+	final Sequence tail = new Sequence();
+
+	/**
+	 * @param capacity rounded up to the next power of two
+	 * @param waitStrategy how put and take wait
+	 */
+	RingBuffer(int capacity, WaitStrategy waitStrategy) {
+		if (capacity < 1 || capacity > MAXIMUM_CAPACITY) {
+			throw new IllegalArgumentException("Capacity out of range: " + capacity);
+		}
+		if (waitStrategy == null) {
+			throw new NullPointerException();
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		buffer = new AtomicReferenceArray<>(size);
+		mask = size-1;
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Adds an element if there is room, never waits
+	 * @param e the element
+	 * @return true if it was added, false if the ring is full
+	 */
+	public abstract boolean offer(E e);
+
+	/**
+	 * Adds as many elements as there is room for, in order, claiming
+	 * and publishing them as one batch
+	 * @param items the elements
+	 * @return how many of the first elements were added
+	 * @throws NullPointerException if any element is null, nothing is added then
+	 */
+	public abstract int offerAll(Collection<? extends E> items);
+
+	/**
+	 * Adds an element, waiting while the ring is full
+	 * @param e the element
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void put(E e) throws InterruptedException {
+		for (int round = 0; !offer(e); round++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			waitStrategy.idle(round);
+		}
+	}
+
+	/**
+	 * Takes the oldest element, only one thread may consume
+	 * @return the element or null if the ring is empty
+	 */
+	public E poll() {
+		long h = head.get();
+		int slot = (int) h & mask;
+		E e = buffer.get(slot);
+		if (e == null) {
+			return null;
+		}
+		buffer.lazySet(slot, null);
+		head.lazySet(h+1);
+		return e;
+	}
+
+	/**
+	 * @return the oldest element without taking it, or null if empty
+	 */
+	public E peek() {
+		return buffer.get((int) head.get() & mask);
+	}
+
+	/**
+	 * Takes the oldest element, waiting while the ring is empty
+	 * @return the element
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public E take() throws InterruptedException {
+		E e;
+		for (int round = 0; (e = poll()) == null; round++) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			waitStrategy.idle(round);
+		}
+		return e;
+	}
+
+	/**
+	 * Takes up to max elements in order into a collection and frees
+	 * their slots with a single move of the head. If the sink
+	 * throws, the elements it already took stay taken
+	 * @param sink where the elements go
+	 * @param max most elements to take
+	 * @return how many were taken
+	 */
+	public int drainTo(Collection<? super E> sink, int max) {
+		long h = head.get();
+		int taken = 0;
+		try {
+			while (taken < max) {
+				int slot = (int) (h + taken) & mask;
+				E e = buffer.get(slot);
+				if (e == null) {
+					break;
+				}
+				sink.add(e);
+				buffer.lazySet(slot, null);
+				taken++;
+			}
+		} finally {
+			//Publish the slots already emptied even if the sink threw,
+			//or the next poll would wait on the first of them forever
+			if (taken > 0) {
+				head.lazySet(h + taken);
+			}
+		}
+		return taken;
+	}
+
+	/**
+	 * Takes everything that is in the ring right now
+	 * @param sink where the elements go
+	 * @return how many were taken
+	 */
+	public int drainTo(Collection<? super E> sink) {
+		return drainTo(sink, capacity());
+	}
+
+	/**
+	 * @return the number of elements, a snapshot that may be stale
+	 */
+	public int size() {
+		while (true) {
+			long h = head.get();
+			long t = tail.get();
+			if (h == head.get()) {
+				return (int) Math.max(0, Math.min(t - h, capacity()));
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return peek() == null;
+	}
+
+	/**
+	 * @return the fixed number of slots
+	 */
+	public int capacity() {
+		return mask+1;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+}
@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A RingBuffer for exactly one producer thread and one consumer thread.
+ * <p>The producer owns the tail, so claiming a slot is a plain read and an
+ * ordered store with no compare and set. It also keeps the last head it saw
+ * and only reads the consumer's cache line again once that says the ring
+ * is full.
+ * </p>
+ *
+ * @param <E> element
+ */
+public final class SpscRingBuffer<E> extends RingBuffer<E> {
+
+	/** Producer's last view of the head, only the producer touches it */
+	private long headCache;
+
+	/**
+	 * @param capacity rounded up to the next power of two
+	 */
+	public SpscRingBuffer(int capacity) {
+		this(capacity, WaitStrategy.YIELD);
+	}
+
+	/**
+	 * @param capacity rounded up to the next power of two
+	 * @param waitStrategy how put and take wait
+	 */
+	public SpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+		super(capacity, waitStrategy);
+	}
+
+	/**
+	 * @return free slots as seen by the producer at tail t
+	 */
+	private int free(long t) {
+		int free = capacity() - (int) (t - headCache);
+		if (free == 0) {
+			headCache = head.get();
+			free = capacity() - (int) (t - headCache);
+		}
+		return free;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		long t = tail.get();
+		if (free(t) == 0) {
+			return false;
+		}
+		buffer.lazySet((int) t & mask, e);
+		tail.lazySet(t+1);
+		return true;
+	}
+
+	/**
+	 * The batch is copied first and checked for nulls, so
+	 * a bad element never leaves part of it published
+	 */
+	@Override
+	public int offerAll(Collection<? extends E> items) {
+		List<E> batch = new ArrayList<>(items);
+		if (batch.contains(null)) {
+			throw new NullPointerException();
+		}
+		long t = tail.get();
+		int free = free(t);
+		if (free < batch.size()) {
+			headCache = head.get();
+			free = capacity() - (int) (t - headCache);
+		}
+		int count = Math.min(free, batch.size());
+		for (int i = 0; i < count; i++) {
+			buffer.lazySet((int) (t + i) & mask, batch.get(i));
+		}
+		if (count > 0) {
+			tail.lazySet(t + count);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,119 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multithreaded put, get and delete against the ConcurrentHashTable.
+ * <p>Writers own disjoint key ranges and mirror every change in their own
+ * reference map, so the final table has to match the union of the maps.
+ * A set of stable keys is added up front and never touched again. Readers
+ * check that these keys always read their value without locking, while the
+ * writers grow and shrink the segments from a tiny starting size.
+ * </p>
+ */
+public class ConcurrentHashTableStressTest {
+
+	private static final int WRITERS = 4;
+	private static final int READERS = 2;
+	private static final int OPS = 200_000;
+	private static final int KEYS_PER_WRITER = 5_000;
+	private static final int STABLE = 1_000;
+
+	public static void main(String[] args) throws InterruptedException {
+		ConcurrentHashTable<Integer,Integer> table = new ConcurrentHashTable<>(2, 4);
+		for(int k = 0; k < STABLE; k++) {
+			table.add(-k-1, k);
+		}
+
+		List<Map<Integer,Integer>> references = new ArrayList<>();
+		AtomicReference<String> failure = new AtomicReference<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] writers = new Thread[WRITERS];
+		Thread[] readers = new Thread[READERS];
+
+		for(int w = 0; w < WRITERS; w++) {
+			Map<Integer,Integer> reference = new HashMap<>();
+			references.add(reference);
+			int base = w * KEYS_PER_WRITER;
+			writers[w] = new Thread(() -> {
+				await(start);
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for(int i = 0; i < OPS && failure.get() == null; i++) {
+					int key = base + random.nextInt(KEYS_PER_WRITER);
+					int op = random.nextInt(3);
+					if(op == 0) {
+						Integer previous = table.add(key, i);
+						check(failure, previous, reference.put(key, i), "add " + key);
+					} else if(op == 1) {
+						boolean removed = table.delete(key);
+						check(failure, removed, reference.remove(key) != null, "delete " + key);
+					} else {
+						check(failure, table.getValue(key), reference.get(key), "getValue " + key);
+					}
+				}
+			});
+		}
+		for(int r = 0; r < READERS; r++) {
+			readers[r] = new Thread(() -> {
+				await(start);
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while(writing.get() && failure.get() == null) {
+					int k = random.nextInt(STABLE);
+					check(failure, table.getValue(-k-1), k, "stable getValue " + (-k-1));
+				}
+			});
+		}
+
+		for(Thread t : writers) {
+			t.start();
+		}
+		for(Thread t : readers) {
+			t.start();
+		}
+		start.countDown();
+		for(Thread t : writers) {
+			t.join();
+		}
+		writing.set(false);
+		for(Thread t : readers) {
+			t.join();
+		}
+		if(failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+
+		int expectedSize = STABLE;
+		for(Map<Integer,Integer> reference : references) {
+			expectedSize += reference.size();
+			for(Map.Entry<Integer,Integer> e : reference.entrySet()) {
+				if(!e.getValue().equals(table.getValue(e.getKey()))) {
+					throw new AssertionError("lost " + e);
+				}
+			}
+		}
+		if(table.size() != expectedSize) {
+			throw new AssertionError("size " + table.size() + " expected " + expectedSize);
+		}
+		System.out.println("ConcurrentHashTableStressTest passed, " + expectedSize + " entries");
+	}
+
+	private static void check(AtomicReference<String> failure, Object actual, Object expected, String what) {
+		if(actual == null ? expected != null : !actual.equals(expected)) {
+			failure.compareAndSet(null, what + " gave " + actual + " expected " + expected);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
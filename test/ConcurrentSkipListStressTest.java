@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multithreaded add, delete and contains against the ConcurrentSkipList.
+ * <p>Writers own disjoint key ranges and mirror every change in their own
+ * reference map, so every answer they get has to match the map exactly.
+ * Racers all fight over a handful of shared keys. For each shared key the
+ * adds that found it missing and the deletes that removed it have to
+ * alternate, so at the end their counts differ by one if the key is there
+ * and by zero if it is not. Readers check that stable keys added up front
+ * are always contained while the list grows and shrinks around them.
+ * </p>
+ */
+public class ConcurrentSkipListStressTest {
+
+	private static final int WRITERS = 4;
+	private static final int RACERS = 4;
+	private static final int READERS = 2;
+	private static final int OPS = 200_000;
+	private static final int KEYS_PER_WRITER = 5_000;
+	private static final int SHARED = 16;
+	private static final int STABLE = 1_000;
+
+	public static void main(String[] args) throws InterruptedException {
+		ConcurrentSkipList<Integer,Integer> list = new ConcurrentSkipList<>();
+		for(int k = 0; k < STABLE; k++) {
+			list.add(-k-1, k);
+		}
+
+		List<Map<Integer,Integer>> references = new ArrayList<>();
+		AtomicIntegerArray inserted = new AtomicIntegerArray(SHARED);
+		AtomicIntegerArray removed = new AtomicIntegerArray(SHARED);
+		AtomicReference<String> failure = new AtomicReference<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		Thread[] readers = new Thread[READERS];
+
+		for(int w = 0; w < WRITERS; w++) {
+			Map<Integer,Integer> reference = new TreeMap<>();
+			references.add(reference);
+			int base = SHARED + w * KEYS_PER_WRITER;
+			workers.add(new Thread(() -> {
+				await(start);
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for(int i = 0; i < OPS && failure.get() == null; i++) {
+					int key = base + random.nextInt(KEYS_PER_WRITER);
+					int op = random.nextInt(3);
+					if(op == 0) {
+						Integer previous = list.add(key, i);
+						check(failure, previous, reference.put(key, i), "add " + key);
+					} else if(op == 1) {
+						boolean deleted = list.delete(key);
+						check(failure, deleted, reference.remove(key) != null, "delete " + key);
+					} else {
+						check(failure, list.contains(key), reference.containsKey(key), "contains " + key);
+					}
+				}
+			}));
+		}
+		for(int r = 0; r < RACERS; r++) {
+			workers.add(new Thread(() -> {
+				await(start);
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for(int i = 0; i < OPS && failure.get() == null; i++) {
+					int key = random.nextInt(SHARED);
+					if(random.nextBoolean()) {
+						if(list.add(key, i) == null) {
+							inserted.incrementAndGet(key);
+						}
+					} else if(list.delete(key)) {
+						removed.incrementAndGet(key);
+					}
+				}
+			}));
+		}
+		for(int r = 0; r < READERS; r++) {
+			readers[r] = new Thread(() -> {
+				await(start);
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while(writing.get() && failure.get() == null) {
+					int k = random.nextInt(STABLE);
+					check(failure, list.contains(-k-1), true, "stable contains " + (-k-1));
+				}
+			});
+		}
+
+		for(Thread t : workers) {
+			t.start();
+		}
+		for(Thread t : readers) {
+			t.start();
+		}
+		start.countDown();
+		for(Thread t : workers) {
+			t.join();
+		}
+		writing.set(false);
+		for(Thread t : readers) {
+			t.join();
+		}
+		if(failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+
+		int expectedSize = STABLE;
+		for(int key = 0; key < SHARED; key++) {
+			int present = list.contains(key) ? 1 : 0;
+			if(inserted.get(key) - removed.get(key) != present) {
+				throw new AssertionError("shared key " + key + " added " + inserted.get(key)
+						+ " times, deleted " + removed.get(key) + " times, present " + (present == 1));
+			}
+			expectedSize += present;
+		}
+		for(Map<Integer,Integer> reference : references) {
+			expectedSize += reference.size();
+			for(Map.Entry<Integer,Integer> e : reference.entrySet()) {
+				if(!e.getValue().equals(list.getValue(e.getKey()))) {
+					throw new AssertionError("lost " + e);
+				}
+			}
+		}
+		if(list.size() != expectedSize) {
+			throw new AssertionError("size " + list.size() + " expected " + expectedSize);
+		}
+		int walked = 0;
+		Integer last = null;
+		for(Iterator<Integer> it = list.keys(); it.hasNext(); walked++) {
+			Integer key = it.next();
+			if(last != null && last >= key) {
+				throw new AssertionError("keys out of order at " + last + ", " + key);
+			}
+			last = key;
+		}
+		if(walked != expectedSize) {
+			throw new AssertionError("walked " + walked + " keys expected " + expectedSize);
+		}
+		System.out.println("ConcurrentSkipListStressTest passed, " + expectedSize + " entries");
+	}
+
+	private static void check(AtomicReference<String> failure, Object actual, Object expected, String what) {
+		if(actual == null ? expected != null : !actual.equals(expected)) {
+			failure.compareAndSet(null, what + " gave " + actual + " expected " + expected);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
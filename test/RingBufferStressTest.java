@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Producers and a consumer running at once against the SpscRingBuffer
+ * and the MpscRingBuffer.
+ * <p>Every producer sends its own numbers in increasing order with a mix of
+ * offer, offerAll and put. The consumer takes them with take, poll and
+ * drainTo and checks that each producer's numbers arrive in order with none
+ * lost or repeated. A small ring makes the producers wrap it and wait on a
+ * full ring all the time. Both rings are also checked to reject a batch
+ * holding a null before any of it is published.
+ * </p>
+ */
+public class RingBufferStressTest {
+
+	private static final int CAPACITY = 64;
+	private static final int PER_PRODUCER = 500_000;
+	private static final int MPSC_PRODUCERS = 4;
+	private static final int MAX_BATCH = 16;
+
+	public static void main(String[] args) throws InterruptedException {
+		checkNullBatch(new SpscRingBuffer<>(CAPACITY));
+		checkNullBatch(new MpscRingBuffer<>(CAPACITY));
+		run("SpscRingBuffer", new SpscRingBuffer<>(CAPACITY), 1);
+		run("MpscRingBuffer", new MpscRingBuffer<>(CAPACITY), MPSC_PRODUCERS);
+		System.out.println("RingBufferStressTest passed");
+	}
+
+	/**
+	 * A batch with a null must throw and leave the ring as it was
+	 */
+	private static void checkNullBatch(RingBuffer<Long> ring) {
+		ring.offer(0L);
+		try {
+			ring.offerAll(Arrays.asList(1L, 2L, null, 3L));
+			throw new AssertionError(ring.getClass().getName() + " took a batch with a null");
+		} catch(NullPointerException expected) {
+		}
+		if(ring.size() != 1 || ring.poll() != 0L || ring.poll() != null) {
+			throw new AssertionError(ring.getClass().getName() + " published part of a null batch");
+		}
+	}
+
+	/**
+	 * Producer p sends p * PER_PRODUCER up to (p+1) * PER_PRODUCER - 1
+	 */
+	private static void run(String name, RingBuffer<Long> ring, int producers) throws InterruptedException {
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] threads = new Thread[producers];
+		for(int p = 0; p < producers; p++) {
+			long first = (long) p * PER_PRODUCER;
+			threads[p] = new Thread(() -> {
+				try {
+					produce(ring, first, failure);
+				} catch(Throwable t) {
+					failure.compareAndSet(null, t);
+				}
+			});
+		}
+		for(Thread t : threads) {
+			t.start();
+		}
+
+		long[] expected = new long[producers];
+		for(int p = 0; p < producers; p++) {
+			expected[p] = (long) p * PER_PRODUCER;
+		}
+		long total = (long) producers * PER_PRODUCER;
+		List<Long> drained = new ArrayList<>();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for(long received = 0; received < total && failure.get() == null;) {
+			int op = random.nextInt(3);
+			if(op == 0) {
+				received += accept(ring.take(), expected);
+			} else if(op == 1) {
+				Long e = ring.poll();
+				if(e != null) {
+					received += accept(e, expected);
+				}
+			} else {
+				drained.clear();
+				ring.drainTo(drained, MAX_BATCH);
+				for(Long e : drained) {
+					received += accept(e, expected);
+				}
+			}
+		}
+		for(Thread t : threads) {
+			t.join();
+		}
+		if(failure.get() != null) {
+			throw new AssertionError(name + " producer failed", failure.get());
+		}
+		if(!ring.isEmpty()) {
+			throw new AssertionError(name + " still holds " + ring.size() + " elements");
+		}
+		System.out.println(name + " moved " + total + " elements from " + producers + " producers");
+	}
+
+	private static void produce(RingBuffer<Long> ring, long first, AtomicReference<Throwable> failure)
+			throws InterruptedException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long next = first;
+		long end = first + PER_PRODUCER;
+		List<Long> batch = new ArrayList<>();
+		while(next < end && failure.get() == null) {
+			int op = random.nextInt(3);
+			if(op == 0) {
+				if(ring.offer(next)) {
+					next++;
+				}
+			} else if(op == 1) {
+				batch.clear();
+				for(long e = next; e < end && batch.size() < MAX_BATCH; e++) {
+					batch.add(e);
+				}
+				next += ring.offerAll(batch);
+			} else {
+				ring.put(next++);
+			}
+		}
+	}
+
+	/**
+	 * Checks an element is the next one its producer was due to send
+	 * @return 1, the number of elements accepted
+	 */
+	private static int accept(Long e, long[] expected) {
+		int p = (int) (e / PER_PRODUCER);
+		if(p >= expected.length || e != expected[p]) {
+			throw new AssertionError("got " + e + " expected "
+					+ (p < expected.length ? String.valueOf(expected[p]) : "no producer " + p));
+		}
+		expected[p]++;
+		return 1;
+	}
+}